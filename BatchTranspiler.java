@@ -0,0 +1,278 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class BatchTranspiler {
+    private final Path outputRoot;
+    private final int parallelism;
+    private final TranspileCache cache;
+    private final Transpiler transpiler = new Transpiler();
+
+    public BatchTranspiler(Path outputRoot, int parallelism) {
+        this(outputRoot, parallelism, new TranspileCache(TranspileCache.DEFAULT_MEMORY_LIMIT));
+    }
+
+    public BatchTranspiler(Path outputRoot, int parallelism, TranspileCache cache) {
+        this.outputRoot = outputRoot;
+        this.parallelism = Math.max(1, parallelism);
+        this.cache = cache;
+    }
+
+    private static final String USAGE =
+            "Usage: java Main --batch <outputDir> [-j <threads>] [--cache <dir>] [--cache-memory <MB>] [--metrics <file.json|->] <file-or-directory>...";
+
+    // Usage: java Main --batch <outputDir> [-j <threads>] [--cache <dir>] [--cache-memory <MB>] [--metrics <file.json|->] <file-or-directory>...
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            return;
+        }
+
+        Path outputRoot = Paths.get(args[0]);
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        Path cacheDirectory = null;
+        long cacheMemory = TranspileCache.DEFAULT_MEMORY_LIMIT;
+        String metricsFile = null;
+        List<Path> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("-j") && i + 1 < args.length) {
+                    parallelism = parseThreads(args[++i]);
+                } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                    cacheDirectory = Paths.get(args[++i]);
+                } else if (args[i].equals("--cache-memory") && i + 1 < args.length) {
+                    cacheMemory = TranspileCache.parseMemoryLimit(args[++i]);
+                } else if (args[i].equals("--metrics") && i + 1 < args.length) {
+                    metricsFile = args[++i];
+                } else {
+                    inputs.add(Paths.get(args[i]));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        // Identical scripts within the run always share one conversion; --cache also keeps results across runs
+        TranspileCache cache = new TranspileCache(cacheMemory, cacheDirectory);
+        if (metricsFile != null) {
+            Metrics.setEnabled(true);
+            Metrics.registerMBean();
+        }
+        Report report = new BatchTranspiler(outputRoot, parallelism, cache).run(inputs);
+        report.print();
+        if (metricsFile != null) {
+            writeMetrics(metricsFile);
+        }
+        if (report.failed() > 0) {
+            System.exit(1);
+        }
+    }
+
+    // -j <threads>; shared with the daemon
+    static int parseThreads(String threads) {
+        try {
+            int count = Integer.parseInt(threads);
+            if (count >= 1) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("-j expects a positive number of threads, not '" + threads + "'");
+    }
+
+    public Report run(List<Path> inputs) {
+        List<Job> jobs = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+
+        // Expand directories into their *.sh files, mirroring the layout under outputRoot
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> files = Files.walk(input)) {
+                    for (Path file : files.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".sh"))
+                                          .sorted()
+                                          .collect(Collectors.toList())) {
+                        jobs.add(new Job(file, outputRoot.resolve(toPythonName(input.relativize(file)))));
+                    }
+                } catch (IOException e) {
+                    results.add(Result.failure(input, e, 0));
+                }
+            } else {
+                jobs.add(new Job(input, outputRoot.resolve(toPythonName(input.getFileName()))));
+            }
+        }
+        jobs = withoutCollisions(jobs, results);
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<Result>> tasks = new ArrayList<>();
+            for (Job job : jobs) {
+                tasks.add(pool.submit(() -> convert(job)));
+            }
+            for (ForkJoinTask<Result> task : tasks) {
+                results.add(task.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        return new Report(results, System.nanoTime() - start, cache != null ? cache.stats() : null);
+    }
+
+    // Per-phase counts, latency percentiles and allocated bytes as JSON, to a file or stdout ("-")
+    private static void writeMetrics(String target) {
+        String json = Metrics.toJson();
+        if (target.equals("-")) {
+            System.out.print(json);
+            return;
+        }
+        try {
+            Files.write(Paths.get(target), json.getBytes(StandardCharsets.UTF_8));
+            System.out.println("📊 Metrics written to " + target);
+        } catch (IOException e) {
+            System.err.println("❌ Error writing metrics: " + e.getMessage());
+        }
+    }
+
+    // Two different scripts that map to one output file (dir1/x.sh and dir2/x.sh) would overwrite each other's
+    // Python; the later one fails instead. A script named twice is converted once.
+    private static List<Job> withoutCollisions(List<Job> jobs, List<Result> results) {
+        Map<Path, Path> writers = new HashMap<>();
+        List<Job> kept = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            Path input = job.input.toAbsolutePath().normalize();
+            Path previous = writers.putIfAbsent(job.output.toAbsolutePath().normalize(), input);
+            if (previous == null) {
+                kept.add(job);
+            } else if (!previous.equals(input)) {
+                results.add(Result.failure(job.input, new IOException(
+                        job.output + " is already the output of " + previous + "; convert them separately"), 0));
+            }
+        }
+        return kept;
+    }
+
+    private Result convert(Job job) {
+        long start = System.nanoTime();
+        Metrics.Span span = Metrics.start();
+        try {
+            String input = new String(Files.readAllBytes(job.input), StandardCharsets.UTF_8);
+            String pythonCode = cache != null ? cache.get(input, transpiler::transpile) : transpiler.transpile(input);
+
+            Path parent = job.output.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(job.output, pythonCode.getBytes(StandardCharsets.UTF_8));
+            Metrics.stop(span, Metrics.CONVERT);
+            return Result.success(job.input, job.output, input.length(), System.nanoTime() - start);
+        } catch (Exception | StackOverflowError e) {
+            // A bad script is reported and skipped; it never aborts the rest of the batch
+            return Result.failure(job.input, e, System.nanoTime() - start);
+        }
+    }
+
+    private static Path toPythonName(Path relative) {
+        String name = relative.getFileName().toString();
+        String pythonName = name.endsWith(".sh") ? name.substring(0, name.length() - 3) + ".py" : name + ".py";
+        return relative.resolveSibling(pythonName);
+    }
+
+    private static class Job {
+        final Path input;
+        final Path output;
+
+        Job(Path input, Path output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
+
+    public static class Result {
+        final Path input;
+        final Path output;
+        final boolean success;
+        final String error;
+        final long inputChars;
+        final long nanos;
+
+        private Result(Path input, Path output, boolean success, String error, long inputChars, long nanos) {
+            this.input = input;
+            this.output = output;
+            this.success = success;
+            this.error = error;
+            this.inputChars = inputChars;
+            this.nanos = nanos;
+        }
+
+        static Result success(Path input, Path output, long inputChars, long nanos) {
+            return new Result(input, output, true, null, inputChars, nanos);
+        }
+
+        static Result failure(Path input, Throwable error, long nanos) {
+            String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+            return new Result(input, null, false, message, 0, nanos);
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+    }
+
+    public static class Report {
+        private final List<Result> results;
+        private final long elapsedNanos;
+        private final TranspileCache.Stats cacheStats;   // null when the batch ran without a cache
+
+        Report(List<Result> results, long elapsedNanos, TranspileCache.Stats cacheStats) {
+            this.results = results;
+            this.elapsedNanos = elapsedNanos;
+            this.cacheStats = cacheStats;
+        }
+
+        public List<Result> getResults() {
+            return results;
+        }
+
+        public long succeeded() {
+            return results.stream().filter(Result::isSuccess).count();
+        }
+
+        public long failed() {
+            return results.size() - succeeded();
+        }
+
+        public void print() {
+            for (Result result : results) {
+                if (result.success) {
+                    System.out.printf("✅ %s → %s (%.1f ms)%n", result.input, result.output, result.nanos / 1e6);
+                } else {
+                    System.out.printf("❌ %s: %s%n", result.input, result.error);
+                }
+            }
+
+            double seconds = elapsedNanos / 1e9;
+            long chars = results.stream().mapToLong(r -> r.inputChars).sum();
+            System.out.printf("%n📊 %d files, %d succeeded, %d failed in %.2f s (%.1f files/s, %.2f MB/s)%n",
+                    results.size(), succeeded(), failed(), seconds,
+                    results.size() / Math.max(seconds, 1e-9), chars / 1e6 / Math.max(seconds, 1e-9));
+            if (cacheStats != null) {
+                System.out.println(cacheStats);
+            }
+        }
+    }
+}
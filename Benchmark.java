@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+// Quick in-process timing loop over BenchmarkCorpus, for a look without Maven. It doesn't fork or guard against
+// dead-code elimination the way JMH does; the JMH benchmarks are in jmh/ (benchmarks.TranspilerBenchmark).
+public class Benchmark {
+    // Results are folded into this field so the JIT cannot eliminate the measured work
+    private static volatile int blackhole;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    interface Workload {
+        int run();
+    }
+
+    // Each benchmark prepares its state for one script and returns the operation to measure
+    private static Map<String, Function<String, Workload>> benchmarks() {
+        Map<String, Function<String, Workload>> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("lex", script -> () -> new Lexer(script).tokenize().size());
+        benchmarks.put("lex-compact", script -> () -> new Lexer(script).tokenizeCompact().size());
+        benchmarks.put("parse", script -> {
+            List<Token> tokens = new Lexer(script).tokenize();
+            return () -> new Parser(tokens).parse().size();
+        });
+        benchmarks.put("generate", script -> {
+            Node program = new Parser(new Lexer(script).tokenizeCompact()).parseProgram();
+            StringBuilder python = new StringBuilder();
+            return () -> {
+                python.setLength(0);
+                CodeGenerator.generate(program, 0, python);
+                return python.length();
+            };
+        });
+        benchmarks.put("pipeline", script -> () -> String.join("\n", new Parser(new Lexer(script).tokenize()).parse()).length());
+        benchmarks.put("pipeline-compact", script -> () -> String.join("\n", new Parser(new Lexer(script).tokenizeCompact()).parse()).length());
+        benchmarks.put("pipeline-reused", script -> {
+            Transpiler transpiler = new Transpiler();  // per-thread Lexer/Parser, reset between runs
+            return () -> transpiler.transpile(script).length();
+        });
+        benchmarks.put("pipeline-parallel", script -> {
+            Transpiler transpiler = new Transpiler();
+            return () -> {
+                StringBuilder python = new StringBuilder();
+                try {
+                    transpiler.transpileParallel(script, python);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return python.length();
+            };
+        });
+        return benchmarks;
+    }
+
+    // Usage: java Benchmark [-wi <warmup iterations>] [-i <iterations>] [-t <ms per iteration>] [-threads <n>] [regex filter]
+    public static void main(String[] args) {
+        int warmupIterations = 3;
+        int iterations = 5;
+        long iterationMillis = 500;
+        int threads = 0;
+        Pattern filter = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi": warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i": iterations = Integer.parseInt(args[++i]); break;
+                case "-t": iterationMillis = Long.parseLong(args[++i]); break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                default: filter = Pattern.compile(args[i]); break;
+            }
+        }
+
+        Diagnostics.setDefault(Diagnostics.OFF);
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        // ✅ Concurrency mode: one shared Transpiler hammered from many threads, every result checked
+        if (threads > 0) {
+            if (!concurrency(threads, (warmupIterations + iterations) * iterationMillis, filter)) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        System.out.printf("%-28s %14s %12s %10s %14s%n", "Benchmark", "ops/s", "± error", "ns/token", "B/op");
+        for (Map.Entry<String, Function<String, Workload>> benchmark : benchmarks().entrySet()) {
+            for (Map.Entry<String, String> script : BenchmarkCorpus.scripts().entrySet()) {
+                String name = benchmark.getKey() + ":" + script.getKey();
+                if (filter != null && !filter.matcher(name).find()) {
+                    continue;
+                }
+
+                Workload workload;
+                try {
+                    workload = benchmark.getValue().apply(script.getValue());
+                    workload.run();
+                } catch (RuntimeException e) {
+                    System.out.printf("%-28s unsupported: %s%n", name, e.getMessage());
+                    continue;
+                }
+
+                int tokenCount = new Lexer(script.getValue()).tokenize().size();
+                measure(name, workload, tokenCount, warmupIterations, iterations, iterationMillis);
+            }
+        }
+    }
+
+    // Each thread walks the corpus from its own offset so different scripts are in flight at once
+    private static boolean concurrency(int threads, long millis, Pattern filter) {
+        Map<String, String> scripts = new LinkedHashMap<>();
+        Map<String, String> expected = new LinkedHashMap<>();
+        for (Map.Entry<String, String> script : BenchmarkCorpus.scripts().entrySet()) {
+            if (filter != null && !filter.matcher("pipeline-reused:" + script.getKey()).find()) {
+                continue;
+            }
+            // Reference output from fresh single-use instances on this thread
+            StringBuilder python = new StringBuilder();
+            for (String line : new Parser(new Lexer(script.getValue()).tokenizeCompact()).parse()) {
+                python.append(line).append("\n");
+            }
+            scripts.put(script.getKey(), script.getValue());
+            expected.put(script.getKey(), python.toString());
+        }
+        List<String> names = new ArrayList<>(scripts.keySet());
+        if (names.isEmpty()) {
+            System.out.println("⚠️ No corpus scripts match the filter");
+            return true;
+        }
+
+        Transpiler transpiler = new Transpiler();
+        AtomicLong conversions = new AtomicLong();
+        AtomicLong mismatches = new AtomicLong();
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            pool.execute(() -> {
+                for (int i = offset; System.nanoTime() < deadline; i++) {
+                    String name = names.get(i % names.size());
+                    if (!transpiler.transpile(scripts.get(name)).equals(expected.get(name))) {
+                        if (mismatches.incrementAndGet() == 1) {
+                            System.out.println("❌ Output differs for " + name + " on " + Thread.currentThread().getName());
+                        }
+                    }
+                    conversions.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(millis + 60_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%s %d threads, %d conversions over %d scripts in %.1f s (%.1f ops/s), %d mismatches%n",
+                mismatches.get() == 0 ? "✅" : "❌", threads, conversions.get(), names.size(), seconds,
+                conversions.get() / seconds, mismatches.get());
+        return mismatches.get() == 0;
+    }
+
+    private static void measure(String name, Workload workload, int tokenCount,
+                                int warmupIterations, int iterations, long iterationMillis) {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(workload, iterationMillis);
+        }
+
+        double[] opsPerSecond = new double[iterations];
+        long totalOps = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < iterations; i++) {
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            long ops = runIteration(workload, iterationMillis);
+            long nanos = System.nanoTime() - start;
+            totalBytes += THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+            opsPerSecond[i] = ops / (nanos / 1e9);
+            totalOps += ops;
+            totalNanos += nanos;
+        }
+
+        double mean = 0;
+        for (double value : opsPerSecond) {
+            mean += value / iterations;
+        }
+        double variance = 0;
+        for (double value : opsPerSecond) {
+            variance += (value - mean) * (value - mean) / Math.max(1, iterations - 1);
+        }
+
+        double nanosPerOp = (double) totalNanos / totalOps;
+        System.out.printf("%-28s %14.1f %12.1f %10.1f %14d%n",
+                name, mean, Math.sqrt(variance), nanosPerOp / tokenCount, totalBytes / totalOps);
+    }
+
+    private static long runIteration(Workload workload, long iterationMillis) {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000;
+        long ops = 0;
+        int result = 0;
+        do {
+            result += workload.run();
+            ops++;
+        } while (System.nanoTime() < deadline);
+        blackhole = result;
+        return ops;
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class BenchmarkCorpus {
+    // Representative Bash scripts, generated so every run benchmarks exactly the same input
+    public static Map<String, String> scripts() {
+        Map<String, String> scripts = new LinkedHashMap<>();
+        scripts.put("small", small());
+        scripts.put("nested", deeplyNested(40));
+        scripts.put("deep", deeplyNested(400));
+        scripts.put("flat", longFlat(5000));
+        scripts.put("loops", loopHeavy(500));
+        scripts.put("case", caseHeavy(500));
+        scripts.put("while", longWhileLoops(100, 40));
+        return scripts;
+    }
+
+    public static String small() {
+        return "# greet the user\n"
+             + "name=\"world\"\n"
+             + "echo \"hello $name\"\n"
+             + "if [ $count -gt 3 ]; then\n"
+             + "    echo \"big\"\n"
+             + "else\n"
+             + "    echo \"small\"\n"
+             + "fi\n";
+    }
+
+    public static String deeplyNested(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            String indent = "    ".repeat(i);
+            switch (i % 3) {
+                case 0:
+                    sb.append(indent).append("if [ $v").append(i).append(" -lt ").append(i).append(" ]; then\n");
+                    break;
+                case 1:
+                    sb.append(indent).append("for i").append(i).append(" in {1..").append(i).append("}; do\n");
+                    break;
+                default:
+                    sb.append(indent).append("while [ $w").append(i).append(" -le ").append(i).append(" ]; do\n");
+                    break;
+            }
+            sb.append(indent).append("    echo \"level ").append(i).append("\"\n");
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            sb.append("    ".repeat(i)).append(i % 3 == 0 ? "fi" : "done").append("\n");
+        }
+        return sb.toString();
+    }
+
+    public static String longFlat(int statements) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            switch (i % 4) {
+                case 0:
+                    sb.append("echo \"step ").append(i).append(" of the installer\"\n");
+                    break;
+                case 1:
+                    sb.append("value").append(i).append("=").append(i).append("\n");
+                    break;
+                case 2:
+                    sb.append("echo $value").append(i - 1).append("\n");
+                    break;
+                default:
+                    sb.append("mkdir build_").append(i).append("\n");
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    public static String loopHeavy(int loops) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < loops; i++) {
+            if (i % 2 == 0) {
+                sb.append("for n in {1..").append(i + 1).append("}; do\n")
+                  .append("    echo \"item $n\"\n")
+                  .append("done\n");
+            } else {
+                sb.append("while [ $c").append(i).append(" -lt ").append(i).append(" ]; do\n")
+                  .append("    echo \"counter $c").append(i).append("\"\n")
+                  .append("done\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    public static String longWhileLoops(int loops, int bodyStatements) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < loops; i++) {
+            sb.append("while [ $i").append(i).append(" -le 100 ]; do\n");
+            for (int j = 0; j < bodyStatements; j++) {
+                sb.append("    echo \"line ").append(j).append(" of loop $i").append(i).append("\"\n");
+            }
+            sb.append("done\n");
+        }
+        return sb.toString();
+    }
+
+    public static String caseHeavy(int blocks) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < blocks; i++) {
+            sb.append("case $opt").append(i).append(" in\n")
+              .append("    \"start\") echo \"starting\" ;;\n")
+              .append("    \"stop\") echo \"stopping\" ;;\n")
+              .append("esac\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,361 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary form of token streams and syntax trees, so later pipeline stages can load a script without lexing
+// or parsing it again.
+//
+// Layout: magic "B2PY", format version byte, kind byte ('T' tokens, 'N' tree), transpiler version, string
+// table (varint count, then each string), then the body. Strings are a varint byte length plus UTF-8. All integers are
+// unsigned LEB128 varints; strings in the body are table indices, with 0 meaning null.
+//   tokens: varint count, then per token varint TokenType ordinal and varint value index
+//   tree:   per node varint field mask, then the present fields in declaration order: strings as indices,
+//           string lists and node lists as varint length plus elements, child nodes depth-first. Both directions
+//           walk the tree with a work list, so deeply nested scripts save and load on a small thread stack.
+public class BinaryFormat {
+    private static final byte[] MAGIC = {'B', '2', 'P', 'Y'};
+    private static final int FORMAT_VERSION = 2;  // 2: pipeline stages only as children
+    private static final byte KIND_TOKENS = 'T';
+    private static final byte KIND_TREE = 'N';
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    // Field mask bits, in the order the fields are written
+    private static final int TYPE = 1, FUNCTION_NAME = 1 << 1, FILE = 1 << 2, TEXT = 1 << 3, PARAMETERS = 1 << 4,
+            ARGUMENTS = 1 << 5, CHILDREN = 1 << 6, VALUE = 1 << 7, CONTENT = 1 << 8, BODY = 1 << 9,
+            ELSE_BODY = 1 << 10, CONDITION = 1 << 11, ITERABLE = 1 << 12, VARIABLE = 1 << 13, COMMAND = 1 << 14,
+            LEFT = 1 << 15, RIGHT = 1 << 16, OPERATOR = 1 << 17, EXIT_CODE = 1 << 18;
+    private static final int ALL_FIELDS = (1 << 19) - 1;
+    // The fields after children, in the order they are written
+    private static final int[] TRAILING_FIELDS = {VALUE, CONTENT, BODY, ELSE_BODY, CONDITION, ITERABLE, VARIABLE,
+            COMMAND, LEFT, RIGHT, OPERATOR, EXIT_CODE};
+
+    public static void writeTokens(List<Token> tokens, OutputStream out) throws IOException {
+        Writer writer = new Writer();
+        writer.varint(tokens.size());
+        for (Token token : tokens) {
+            writer.varint(token.getType().ordinal());
+            writer.string(token.getValue());
+        }
+        writer.finish(KIND_TOKENS, out);
+    }
+
+    public static List<Token> readTokens(InputStream in) throws IOException {
+        Reader reader = new Reader(in, KIND_TOKENS);
+        int count = reader.count();
+        List<Token> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int ordinal = reader.varint();
+            if (ordinal < 0 || ordinal >= TOKEN_TYPES.length) {
+                throw new IOException("Unknown token type " + ordinal);
+            }
+            tokens.add(new Token(TOKEN_TYPES[ordinal], reader.string()));
+        }
+        return tokens;
+    }
+
+    public static void writeTree(Node tree, OutputStream out) throws IOException {
+        Writer writer = new Writer();
+        writer.node(tree);
+        writer.finish(KIND_TREE, out);
+    }
+
+    public static Node readTree(InputStream in) throws IOException {
+        return new Reader(in, KIND_TREE).node();
+    }
+
+    // Writes the body to memory while interning strings, since the table has to come first
+    private static class Writer {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        void finish(byte kind, OutputStream target) throws IOException {
+            OutputStream out = new BufferedOutputStream(target);
+            out.write(MAGIC);
+            out.write(FORMAT_VERSION);
+            out.write(kind);
+            writeUtf8(out, TranspileCache.TRANSPILER_VERSION);
+            writeVarint(out, strings.size());
+            for (String string : strings) {
+                writeUtf8(out, string);
+            }
+            body.writeTo(out);
+            out.flush();
+        }
+
+        // Work items are nodes still to write and the strings that sit between their child nodes
+        void node(Node root) throws IOException {
+            Deque<Object> work = new ArrayDeque<>();
+            work.push(root);
+            while (!work.isEmpty()) {
+                Object item = work.pop();
+                if (item instanceof String) {
+                    string((String) item);
+                    continue;
+                }
+                Node node = (Node) item;
+                int mask = (node.type != null ? TYPE : 0)
+                        | (node.functionName != null ? FUNCTION_NAME : 0)
+                        | (node.file != null ? FILE : 0)
+                        | (node.text != null ? TEXT : 0)
+                        | (node.parameters != null ? PARAMETERS : 0)
+                        | (node.arguments != null ? ARGUMENTS : 0)
+                        | (node.children != null ? CHILDREN : 0)
+                        | (node.value != null ? VALUE : 0)
+                        | (node.content != null ? CONTENT : 0)
+                        | (node.body != null ? BODY : 0)
+                        | (node.elseBody != null ? ELSE_BODY : 0)
+                        | (node.condition != null ? CONDITION : 0)
+                        | (node.iterable != null ? ITERABLE : 0)
+                        | (node.variable != null ? VARIABLE : 0)
+                        | (node.command != null ? COMMAND : 0)
+                        | (node.left != null ? LEFT : 0)
+                        | (node.right != null ? RIGHT : 0)
+                        | (node.operator != null ? OPERATOR : 0)
+                        | (node.exitCode != null ? EXIT_CODE : 0);
+                varint(mask);
+
+                if (node.type != null) string(node.type);
+                if (node.functionName != null) string(node.functionName);
+                if (node.file != null) string(node.file);
+                if (node.text != null) string(node.text);
+                if (node.parameters != null) strings(node.parameters);
+                if (node.arguments != null) strings(node.arguments);
+                if (node.children != null) varint(node.children.size());
+
+                // Pushed last first, so they come off the stack in the order they are written
+                if (node.exitCode != null) work.push(node.exitCode);
+                if (node.operator != null) work.push(node.operator);
+                if (node.right != null) work.push(node.right);
+                if (node.left != null) work.push(node.left);
+                if (node.command != null) work.push(node.command);
+                if (node.variable != null) work.push(node.variable);
+                if (node.iterable != null) work.push(node.iterable);
+                if (node.condition != null) work.push(node.condition);
+                if (node.elseBody != null) work.push(node.elseBody);
+                if (node.body != null) work.push(node.body);
+                if (node.content != null) work.push(node.content);
+                if (node.value != null) work.push(node.value);
+                if (node.children != null) {
+                    for (int i = node.children.size() - 1; i >= 0; i--) {
+                        work.push(node.children.get(i));
+                    }
+                }
+            }
+        }
+
+        void strings(List<String> values) throws IOException {
+            varint(values.size());
+            for (String value : values) {
+                string(value);
+            }
+        }
+
+        void string(String value) throws IOException {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            Integer index = indices.get(value);
+            if (index == null) {
+                strings.add(value);
+                index = strings.size();
+                indices.put(value, index);
+            }
+            varint(index);
+        }
+
+        void varint(int value) throws IOException {
+            writeVarint(body, value);
+        }
+    }
+
+    private static class Reader {
+        private final byte[] data;
+        private int position;
+        private final String[] strings;
+
+        // Decodes straight from one byte array; reads the stream to its end
+        Reader(InputStream source, byte kind) throws IOException {
+            data = source.readAllBytes();
+            for (byte b : MAGIC) {
+                if (next() != b) {
+                    throw new IOException("Not a transpiler binary file");
+                }
+            }
+            int format = next();
+            if (format != FORMAT_VERSION) {
+                throw new IOException("Unsupported binary format version " + format);
+            }
+            int actualKind = next();
+            if (actualKind != kind) {
+                throw new IOException("Expected " + (kind == KIND_TREE ? "a syntax tree" : "a token stream")
+                        + " but found kind '" + (char) actualKind + "'");
+            }
+            // Tokens and trees change shape between transpiler versions; a stale file would convert wrongly
+            String version = utf8();
+            if (!version.equals(TranspileCache.TRANSPILER_VERSION)) {
+                throw new IOException("Written by transpiler version " + version + ", this is version "
+                        + TranspileCache.TRANSPILER_VERSION + "; convert the script again");
+            }
+
+            strings = new String[count() + 1];
+            for (int i = 1; i < strings.length; i++) {
+                strings[i] = utf8();
+            }
+        }
+
+        // A node whose child nodes are still being read: the children left to read, then its remaining fields
+        private static class Pending {
+            final Node node;
+            final int mask;
+            int children;
+            int field;
+
+            Pending(Node node, int mask, int children) {
+                this.node = node;
+                this.mask = mask;
+                this.children = children;
+            }
+        }
+
+        // Each node is attached to its parent as soon as its header is read, and filled in from the stack
+        Node node() throws IOException {
+            Deque<Pending> open = new ArrayDeque<>();
+            Node root = open(open);
+            while (!open.isEmpty()) {
+                Pending pending = open.peek();
+                Node node = pending.node;
+                if (pending.children > 0) {
+                    pending.children--;
+                    node.children.add(open(open));
+                    continue;
+                }
+                if (pending.field == TRAILING_FIELDS.length) {
+                    open.pop();
+                    continue;
+                }
+                int field = TRAILING_FIELDS[pending.field++];
+                if ((pending.mask & field) == 0) {
+                    continue;
+                }
+                switch (field) {
+                    case VALUE: node.value = open(open); break;
+                    case CONTENT: node.content = open(open); break;
+                    case BODY: node.body = open(open); break;
+                    case ELSE_BODY: node.elseBody = open(open); break;
+                    case CONDITION: node.condition = open(open); break;
+                    case ITERABLE: node.iterable = open(open); break;
+                    case VARIABLE: node.variable = string(); break;
+                    case COMMAND: node.command = open(open); break;
+                    case LEFT: node.left = open(open); break;
+                    case RIGHT: node.right = open(open); break;
+                    case OPERATOR: node.operator = string(); break;
+                    case EXIT_CODE: node.exitCode = open(open); break;
+                }
+            }
+            return root;
+        }
+
+        // Reads a node's mask and the fields before its children, and leaves the rest to node()
+        private Node open(Deque<Pending> open) throws IOException {
+            int mask = varint();
+            if ((mask & ~ALL_FIELDS) != 0) {
+                throw new IOException("Corrupt transpiler binary file: unknown node fields " + Integer.toHexString(mask));
+            }
+            Node node = new Node((mask & TYPE) != 0 ? string() : null);
+            if ((mask & FUNCTION_NAME) != 0) node.functionName = string();
+            if ((mask & FILE) != 0) node.file = string();
+            if ((mask & TEXT) != 0) node.text = string();
+            if ((mask & PARAMETERS) != 0) node.parameters = strings();
+            if ((mask & ARGUMENTS) != 0) node.arguments = strings();
+            int children = 0;
+            if ((mask & CHILDREN) != 0) {
+                children = count();
+                node.children = new ArrayList<>(children);
+            }
+            open.push(new Pending(node, mask, children));
+            return node;
+        }
+
+        List<String> strings() throws IOException {
+            int count = count();
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(string());
+            }
+            return values;
+        }
+
+        String string() throws IOException {
+            int index = varint();
+            if (index < 0 || index >= strings.length) {
+                throw new IOException("String index " + index + " is outside the table of " + (strings.length - 1));
+            }
+            return strings[index];
+        }
+
+        private String utf8() throws IOException {
+            int length = varint();
+            if (length < 0 || length > data.length - position) {
+                throw new EOFException("Truncated transpiler binary file");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private int next() throws IOException {
+            if (position >= data.length) {
+                throw new EOFException("Truncated transpiler binary file");
+            }
+            return data[position++] & 0xff;
+        }
+
+        // A list length; every element takes at least one byte, so a corrupt count fails here, not in an allocation
+        int count() throws IOException {
+            int count = varint();
+            if (count < 0 || count > data.length - position) {
+                throw new IOException("Corrupt transpiler binary file: count " + count + " at byte " + position);
+            }
+            return count;
+        }
+
+        int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = next();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+    }
+
+    private static void writeUtf8(OutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, utf8.length);
+        out.write(utf8);
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -1,105 +1,1393 @@
-import java.io.FileWriter;
-import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+// Walks the parser's syntax tree once, appending Python source to a single StringBuilder
 public class CodeGenerator {
-    public static void generatePythonFile(List<String> pythonCode) {
-        try (FileWriter writer = new FileWriter("output.py")) {
-            for (String line : pythonCode) {
-                writer.write(line + "\n");
-            }
-            System.out.println("✅ Python file generated: output.py");
-        } catch (IOException e) {
-            System.out.println("❌ Error writing Python file: " + e.getMessage());
+    private static final Pattern VARIABLE_REFERENCE = Pattern.compile("\\$\\{(\\w+)\\}|\\$(\\w+)");
+    private static final int INDENT_WIDTH = 4;
+    private static final String INDENTS = " ".repeat(64 * INDENT_WIDTH);
+
+    public static String generatePythonCode(Node ast) {
+        StringBuilder out = new StringBuilder();
+        generate(ast, 0, out);
+        return out.toString();
+    }
+
+    // Statements write their own indentation; multi-line statements indent every line.
+    // Compound statements write their header and push their blocks onto a stack of pending steps instead of
+    // recursing, so deeply nested scripts generate on a small thread stack, like the parser parses them.
+    public static void generate(Node ast, int indentLevel, StringBuilder out) {
+        Deque<Runnable> pending = new ArrayDeque<>();
+        generateStatement(ast, indentLevel, out, pending);
+        while (!pending.isEmpty()) {
+            pending.pop().run();
         }
     }
 
-    public static String generatePythonCode(Node ast) {
+    private static void generateStatement(Node ast, int indentLevel, StringBuilder out, Deque<Runnable> pending) {
         switch (ast.type) {
-            case "if": return generateIfStatement(ast);
-            case "while": return generateWhileLoop(ast);
-            case "for": return generateForLoop(ast);
-            case "assign": return generateAssignment(ast);
-            case "function_def": return generateFunctionDefinition(ast);
-            case "function_call": return generateFunctionCall(ast);
-            case "echo": return generateEcho(ast);
-            case "redirect": return generateRedirectOutput(ast);
-            case "pipeline": return generatePipeline(ast);
-            case "subshell": return generateSubshell(ast);
-            case "logical_op": return generateLogicalOperator(ast);
-            case "comparison_op": return generateComparisonOperator(ast);
-            case "return": return generateReturnStatement(ast);
-            case "exit": return generateExitStatement(ast);
+            case "program": generateProgram(ast, out); break;
+            case "block": generateBlock(ast, indentLevel, out, pending); break;
+            case "if": generateIfStatement(ast, indentLevel, out, pending); break;
+            case "while": generateWhileLoop(ast, indentLevel, out, pending); break;
+            case "for": generateForLoop(ast, indentLevel, out, pending); break;
+            case "case": generateCaseStatement(ast, indentLevel, out, pending); break;
+            case "assign": generateAssignment(ast, indentLevel, out); break;
+            case "function_def": generateFunctionDefinition(ast, indentLevel, out, pending); break;
+            case "function_call": generateFunctionCall(ast, indentLevel, out); break;
+            case "echo": generateEcho(ast, indentLevel, out); break;
+            case "command": generateCommand(ast, indentLevel, out); break;
+            case "native_command": generateNativeCommand(ast, indentLevel, out); break;
+            case "redirect": generateRedirectOutput(ast, indentLevel, out); break;
+            case "pipeline": generatePipeline(ast, indentLevel, out); break;
+            case "logical_op": generateLogicalStatement(ast, indentLevel, out, pending); break;
+            case "test": indent(indentLevel, out); generateExpression(ast.condition, out); break;
+            case "break": indent(indentLevel, out); out.append("break"); break;
+            case "continue": indent(indentLevel, out); out.append("continue"); break;
+            case "return": generateReturnStatement(ast, indentLevel, out); break;
+            case "exit": generateExitStatement(ast, indentLevel, out); break;
             default: throw new RuntimeException("Unsupported AST Node: " + ast.type);
         }
     }
 
-    public static String generateIfStatement(Node ast) {
-        return "if " + generatePythonCode(ast.condition) + ":\n\t      " + generatePythonCode(ast.body);
+    public static void generateProgram(Node ast, StringBuilder out) {
+        String imports = generateImports(ast);
+        out.append(imports);
+        for (Node statement : ast.children) {
+            if (out.length() > 0) {
+                out.append("\n");
+            }
+            generate(statement, 0, out);
+        }
+    }
+
+    // import lines for the modules the generated code uses, sorted
+    public static String generateImports(Node ast) {
+        return generateImports(imports(ast));
+    }
+
+    // Modules the code generated for this tree needs
+    public static Set<String> imports(Node ast) {
+        Set<String> modules = new TreeSet<>();
+        collectImports(ast, modules);
+        return modules;
+    }
+
+    public static String generateImports(Set<String> modules) {
+        StringBuilder imports = new StringBuilder();
+        for (String module : modules) {
+            if (imports.length() > 0) {
+                imports.append("\n");
+            }
+            imports.append("import ").append(module);
+        }
+        return imports.toString();
+    }
+
+    // Walks the tree with a work list rather than recursion, however deeply it is nested
+    private static void collectImports(Node root, Set<String> modules) {
+        Deque<Node> work = new ArrayDeque<>();
+        push(work, root);
+        addStatementImports(root, modules);
+        while (!work.isEmpty()) {
+            Node ast = work.pop();
+            addImports(ast, modules);
+            if ("block".equals(ast.type) || "program".equals(ast.type)) {
+                for (Node statement : ast.children) {
+                    addStatementImports(statement, modules);
+                }
+            }
+
+            if (ast.children != null) {
+                for (Node child : ast.children) {
+                    push(work, child);
+                }
+            }
+            push(work, ast.value);
+            push(work, ast.content);
+            push(work, ast.body);
+            push(work, ast.elseBody);
+            push(work, ast.condition);
+            push(work, ast.iterable);
+            push(work, ast.command);
+            push(work, ast.left);
+            push(work, ast.right);
+            push(work, ast.exitCode);
+        }
+    }
+
+    // Pipelines only run natively as statements; inside $( ), redirections and && lines they stay shell text
+    private static void addStatementImports(Node statement, Set<String> modules) {
+        if (statement != null && "pipeline".equals(statement.type)) {
+            addPipelineImports(statement, modules);
+        } else if (statement != null && "logical_op".equals(statement.type) && !isShellCommand(statement)) {
+            addStatementImports(statement.right, modules);  // the chain's last command runs as a statement
+            List<Node> operands = new ArrayList<>();
+            List<String> operators = new ArrayList<>();
+            flattenChain(statement, operands, operators);
+            for (Node operand : operands.subList(0, conditionLength(operands, operators))) {
+                if (isShellCommand(operand)) {
+                    modules.add("subprocess");  // echo too, when its status is tested
+                }
+            }
+        }
+    }
+
+    private static void push(Deque<Node> work, Node node) {
+        if (node != null) {
+            work.push(node);
+        }
+    }
+
+    private static void addImports(Node ast, Set<String> modules) {
+        switch (ast.type) {
+            case "command":
+            case "pipeline":
+            case "subshell":
+                modules.add("subprocess");
+                break;
+            case "logical_op":
+                if (isShellCommand(ast)) {
+                    modules.add("subprocess");
+                }
+                break;
+            case "exit":
+                modules.add("sys");
+                break;
+            case "arithmetic":
+                if (ast.text.contains("math.fmod(")) {
+                    modules.add("math");
+                }
+                break;
+            case "native_command":
+                addNativeImports(ast, modules);
+                break;
+            case "unary_test":
+                if (!ast.operator.equals("-z") && !ast.operator.equals("-n")) {
+                    modules.add("os");
+                }
+                break;
+            case "case":
+                for (Node arm : ast.children) {
+                    for (Node pattern : arm.children) {
+                        if ("glob".equals(pattern.type)) {
+                            modules.add("fnmatch");
+                        }
+                    }
+                }
+                break;
+            case "for":
+                addIterableImports(ast.iterable, modules);
+                break;
+        }
+    }
+
+    private static void addIterableImports(Node iterable, Set<String> modules) {
+        if (!"words".equals(iterable.type)) {
+            return;
+        }
+        boolean streamed = false;
+        for (Node item : iterable.children) {
+            if ("glob".equals(item.type)) {
+                modules.add("glob");
+            }
+            streamed |= isStreamed(item);
+        }
+        if (streamed && iterable.children.size() > 1) {
+            modules.add("itertools");
+        }
+    }
+
+    // Steps run in the order given, each before anything it pushes itself
+    private static void schedule(Deque<Runnable> pending, List<Runnable> steps) {
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            pending.push(steps.get(i));
+        }
+    }
+
+    // Schedules the block's statements, separated by newlines
+    private static void generateBlock(Node ast, int indentLevel, StringBuilder out, Deque<Runnable> pending) {
+        if (ast.children.isEmpty()) {
+            indent(indentLevel, out);
+            out.append("pass");
+            return;
+        }
+        for (int i = ast.children.size() - 1; i >= 0; i--) {
+            Node statement = ast.children.get(i);
+            boolean first = i == 0;
+            pending.push(() -> {
+                if (!first) {
+                    out.append("\n");
+                }
+                generateStatement(statement, indentLevel, out, pending);
+            });
+        }
+    }
+
+    private static void generateIfStatement(Node ast, int indentLevel, StringBuilder out, Deque<Runnable> pending) {
+        indent(indentLevel, out);
+        out.append("if ");
+        generateExpression(ast.condition, out);
+        out.append(":\n");
+        List<Runnable> steps = new ArrayList<>();
+        steps.add(() -> generateBlock(ast.body, indentLevel + 1, out, pending));
+
+        // elif chains are nested if nodes; anything else is the else block
+        Node elseBody = ast.elseBody;
+        while (elseBody != null && "if".equals(elseBody.type)) {
+            Node branch = elseBody;
+            steps.add(() -> {
+                out.append("\n");
+                indent(indentLevel, out);
+                out.append("elif ");
+                generateExpression(branch.condition, out);
+                out.append(":\n");
+                generateBlock(branch.body, indentLevel + 1, out, pending);
+            });
+            elseBody = elseBody.elseBody;
+        }
+        if (elseBody != null) {
+            Node elseBlock = elseBody;
+            steps.add(() -> {
+                out.append("\n");
+                indent(indentLevel, out);
+                out.append("else:\n");
+                generateBlock(elseBlock, indentLevel + 1, out, pending);
+            });
+        }
+        schedule(pending, steps);
+    }
+
+    private static void generateWhileLoop(Node ast, int indentLevel, StringBuilder out, Deque<Runnable> pending) {
+        indent(indentLevel, out);
+        out.append("while ");
+        generateExpression(ast.condition, out);
+        out.append(":\n");
+        generateBlock(ast.body, indentLevel + 1, out, pending);
+    }
+
+    private static void generateForLoop(Node ast, int indentLevel, StringBuilder out, Deque<Runnable> pending) {
+        indent(indentLevel, out);
+        out.append("for ").append(ast.variable).append(" in ");
+        generateIterable(ast.iterable, out);
+        out.append(":\n");
+        if (!"counted_range".equals(ast.iterable.type)) {
+            generateBlock(ast.body, indentLevel + 1, out, pending);
+            return;
+        }
+
+        // The while loop this was ended with the counter one step past its last value (or at its start if
+        // it never ran); break skips the else, and then both leave the counter where it stopped
+        List<Runnable> steps = new ArrayList<>();
+        steps.add(() -> generateBlock(ast.body, indentLevel + 1, out, pending));
+        steps.add(() -> {
+            out.append("\n");
+            indent(indentLevel, out);
+            out.append("else:\n");
+            indent(indentLevel + 1, out);
+            out.append(ast.variable).append(" = ").append(ast.iterable.operator.startsWith("<") ? "max(" : "min(")
+                    .append(ast.variable).append(", ");
+            appendRangeStop(ast.iterable, out);
+            out.append(")");
+        });
+        schedule(pending, steps);
+    }
+
+    // Word lists become tuples; a variable or $( ) is split into words the way Bash would. seq and cat are
+    // iterated lazily and globs expand to their sorted matches, chained with the other words, so a huge range
+    // or file is never held in memory as one list.
+    private static void generateIterable(Node ast, StringBuilder out) {
+        if (!"words".equals(ast.type)) {
+            generateExpression(ast, out);
+            return;
+        }
+
+        List<Node> items = ast.children;
+        if (items.stream().anyMatch(CodeGenerator::isStreamed)) {
+            if (items.size() == 1) {
+                appendStreamed(items.get(0), out);
+                return;
+            }
+            out.append("itertools.chain(");
+            for (int i = 0; i < items.size(); i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                Node item = items.get(i);
+                if (isStreamed(item) || "variable".equals(item.type) || "subshell".equals(item.type)) {
+                    appendStreamed(item, out);
+                } else {
+                    out.append("(");
+                    generateExpression(item, out);
+                    out.append(",)");
+                }
+            }
+            out.append(")");
+            return;
+        }
+
+        if (items.size() == 1 && ("variable".equals(items.get(0).type) || "subshell".equals(items.get(0).type))) {
+            appendStreamed(items.get(0), out);
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            Node item = items.get(i);
+            if ("variable".equals(item.type) || "subshell".equals(item.type)) {
+                out.append('*');
+                appendStreamed(item, out);
+            } else {
+                generateExpression(item, out);
+            }
+        }
+        if (items.size() == 1) {
+            out.append(",");
+        }
+    }
+
+    private static boolean isStreamed(Node item) {
+        switch (item.type) {
+            case "glob":
+            case "seq":
+            case "file_words":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // One for-list word as an iterable of the words it expands to
+    private static void appendStreamed(Node item, StringBuilder out) {
+        switch (item.type) {
+            case "variable":
+                out.append(item.variable).append(".split()");
+                break;
+            case "subshell":
+                appendSubshell(item, '"', out);
+                out.append(".split()");
+                break;
+            case "glob":
+                // Sorted like Bash's expansion, and the pattern itself when nothing matches
+                out.append("sorted(glob.glob(");
+                appendString(List.of(item), false, '"', out);
+                out.append(")) or [");
+                appendString(List.of(item), false, '"', out);
+                out.append("]");
+                break;
+            case "seq":
+                appendSeqRange(item.children, out);
+                break;
+            case "file_words":
+                out.append("(word for line in open(");
+                appendPath(item.value, out);
+                out.append(") for word in line.split())");
+                break;
+            default:
+                throw new RuntimeException("Unsupported AST Node: " + item.type);
+        }
+    }
+
+    // seq LAST, seq FIRST LAST, seq FIRST STEP LAST
+    private static void appendSeqRange(List<Node> operands, StringBuilder out) {
+        Node first = operands.size() > 1 ? operands.get(0) : null;
+        Node last = operands.get(operands.size() - 1);
+        int step = operands.size() == 3 ? Integer.parseInt(operands.get(1).text) : 1;
+
+        out.append("range(");
+        if (first == null) {
+            out.append('1');
+        } else if ("literal".equals(first.type)) {
+            out.append(first.text);
+        } else {
+            out.append("int(").append(first.variable).append(")");
+        }
+        out.append(", ");
+        if ("literal".equals(last.type)) {
+            out.append(Integer.parseInt(last.text) + (step > 0 ? 1 : -1));
+        } else {
+            out.append("int(").append(last.variable).append(step > 0 ? ") + 1" : ") - 1");
+        }
+        if (step != 1) {
+            out.append(", ").append(step);
+        }
+        out.append(")");
+    }
+
+    private static void generateCaseStatement(Node ast, int indentLevel, StringBuilder out, Deque<Runnable> pending) {
+        indent(indentLevel, out);
+        out.append("match ");
+        generateExpression(ast.value, out);
+        out.append(":");
+
+        List<Runnable> steps = new ArrayList<>();
+        for (Node arm : ast.children) {
+            steps.add(() -> {
+                out.append("\n");
+                indent(indentLevel + 1, out);
+                out.append("case ");
+                generateCasePatterns(ast.value, arm.children, out);
+                out.append(":\n");
+                generateBlock(arm.body, indentLevel + 2, out, pending);
+            });
+        }
+        schedule(pending, steps);
     }
 
-    public static String generateWhileLoop(Node ast) {
-        return "while " + generatePythonCode(ast.condition) + ":\n    " + generatePythonCode(ast.body);
+    // Constant patterns map onto match patterns; globs and variables need a guard
+    private static void generateCasePatterns(Node subject, List<Node> patterns, StringBuilder out) {
+        boolean constant = true;
+        for (Node pattern : patterns) {
+            if (!isConstantPattern(pattern)) {
+                constant = false;
+            }
+        }
+
+        if (constant) {
+            for (int i = 0; i < patterns.size(); i++) {
+                if (i > 0) {
+                    out.append(" | ");
+                }
+                generateExpression(patterns.get(i), out);
+            }
+            return;
+        }
+        if (patterns.size() == 1 && "wildcard".equals(patterns.get(0).type)) {
+            out.append("_");
+            return;
+        }
+
+        out.append("_ if ");
+        for (int i = 0; i < patterns.size(); i++) {
+            if (i > 0) {
+                out.append(" or ");
+            }
+            Node pattern = patterns.get(i);
+            switch (pattern.type) {
+                case "wildcard":
+                    out.append("True");
+                    break;
+                case "glob":
+                    out.append("fnmatch.fnmatch(");
+                    generateExpression(subject, out);
+                    out.append(", \"").append(pattern.text).append("\")");
+                    break;
+                default:
+                    generateExpression(subject, out);
+                    out.append(" == ");
+                    generateExpression(pattern, out);
+                    break;
+            }
+        }
     }
 
-    public static String generateForLoop(Node ast) {
-        return "for " + ast.variable + " in " + generatePythonCode(ast.iterable) + ":\n    " + generatePythonCode(ast.body);
+    private static boolean isConstantPattern(Node pattern) {
+        switch (pattern.type) {
+            case "literal":
+            case "word":
+                return true;
+            case "string":
+                return !isInterpolated(pattern);
+            default:
+                return false;
+        }
     }
 
-    public static String generateAssignment(Node ast) {
-        return ast.variable + " = " + (ast.value != null ? generatePythonCode(ast.value) : "None");
+    public static void generateAssignment(Node ast, int indentLevel, StringBuilder out) {
+        indent(indentLevel, out);
+        out.append(ast.variable).append(' ').append(ast.operator != null ? ast.operator : "=").append(' ');
+        if (ast.value != null) {
+            generateExpression(ast.value, out);
+        } else {
+            out.append("None");
+        }
     }
 
-    public static String generateFunctionDefinition(Node ast) {
+    private static void generateFunctionDefinition(Node ast, int indentLevel, StringBuilder out, Deque<Runnable> pending) {
+        indent(indentLevel, out);
         String params = (ast.parameters != null) ? String.join(", ", ast.parameters) : "";
-        return "def " + ast.functionName + "(" + params + "):\n    " + generatePythonCode(ast.body);
+        out.append("def ").append(ast.functionName).append("(").append(params).append("):\n");
+        generateBlock(ast.body, indentLevel + 1, out, pending);
+    }
+
+    public static void generateFunctionCall(Node ast, int indentLevel, StringBuilder out) {
+        indent(indentLevel, out);
+        out.append(ast.functionName).append("(");
+        if (ast.value != null) {
+            for (int i = 0; i < ast.value.children.size(); i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                generateExpression(ast.value.children.get(i), out);
+            }
+        }
+        out.append(")");
+    }
+
+    public static void generateEcho(Node ast, int indentLevel, StringBuilder out) {
+        indent(indentLevel, out);
+        out.append("print(");
+        if (!ast.value.children.isEmpty()) {
+            appendString(ast.value.children, false, '"', out);
+        }
+        out.append(")");
+    }
+
+    public static void generateCommand(Node ast, int indentLevel, StringBuilder out) {
+        indent(indentLevel, out);
+        out.append("subprocess.run(");
+        appendShellCommand(ast, '"', out);
+        out.append(", shell=True)");
+    }
+
+    // File commands NativeCommands recognized, one Python statement per operand. Like the shell command, a
+    // failing operation prints an error to stderr and the script carries on with the next one.
+    public static void generateNativeCommand(Node ast, int indentLevel, StringBuilder out) {
+        List<Node> operands = ast.value.children;
+        switch (ast.operator) {
+            case "ls":
+                Node directory = operands.isEmpty() ? null : operands.get(0);
+                indent(indentLevel, out);
+                out.append("try:\n");
+                indent(indentLevel + 1, out);
+                out.append("sys.stdout.write(\"\".join(name + \"\\n\" for name in sorted(os.listdir(");
+                if (directory == null) {
+                    out.append("\".\"");
+                } else {
+                    appendPath(directory, out);
+                }
+                out.append("))").append(ast.text.contains("A") ? "" : " if not name.startswith(\".\")").append("))\n");
+                // Flushed, so a later shell command's output can't overtake the listing
+                indent(indentLevel + 1, out);
+                out.append("sys.stdout.flush()\n");
+                if (directory != null) {
+                    // ls FILE prints the name it was given
+                    indent(indentLevel, out);
+                    out.append("except NotADirectoryError:\n");
+                    indent(indentLevel + 1, out);
+                    out.append("print(");
+                    appendPath(directory, out);
+                    out.append(", flush=True)\n");
+                }
+                appendNativeError(ast.operator, indentLevel, out);
+                return;
+            case "cat":
+                // Earlier print() output is still in the text buffer; the file bytes go straight to the binary one
+                indent(indentLevel, out);
+                out.append("sys.stdout.flush()");
+                break;
+        }
+
+        for (int i = 0; i < operands.size(); i++) {
+            Node path = operands.get(i);
+            if (i > 0 || "cat".equals(ast.operator)) {
+                out.append("\n");
+            }
+            indent(indentLevel, out);
+            out.append("try:\n");
+            indent(indentLevel + 1, out);
+            switch (ast.operator) {
+                case "cat":
+                    out.append("with open(");
+                    appendPath(path, out);
+                    out.append(", \"rb\") as cat_file: shutil.copyfileobj(cat_file, sys.stdout.buffer)");
+                    break;
+                case "touch":
+                    out.append("pathlib.Path(");
+                    appendPath(path, out);
+                    out.append(").touch()");
+                    break;
+                case "mkdir":
+                    out.append(ast.text.contains("p") ? "os.makedirs(" : "os.mkdir(");
+                    appendPath(path, out);
+                    out.append(ast.text.contains("p") ? ", exist_ok=True)" : ")");
+                    break;
+                case "rm":
+                    if (ast.text.contains("f")) {
+                        out.append("with contextlib.suppress(FileNotFoundError): ");
+                    }
+                    if (ast.text.contains("r")) {
+                        out.append("shutil.rmtree(");
+                        appendPath(path, out);
+                        out.append(") if os.path.isdir(");
+                        appendPath(path, out);
+                        out.append(") and not os.path.islink(");
+                        appendPath(path, out);
+                        out.append(") else ");
+                    }
+                    out.append("os.remove(");
+                    appendPath(path, out);
+                    out.append(")");
+                    break;
+                default:
+                    throw new RuntimeException("Unsupported native command: " + ast.operator);
+            }
+            out.append("\n");
+            appendNativeError(ast.operator, indentLevel, out);
+        }
+    }
+
+    // The message coreutils prints for a failed operand, e.g. "rm: cannot remove 'x': No such file or directory"
+    private static void appendNativeError(String command, int indentLevel, StringBuilder out) {
+        indent(indentLevel, out);
+        out.append("except OSError as file_error:\n");
+        indent(indentLevel + 1, out);
+        out.append("print(f\"").append(command).append(": ");
+        switch (command) {
+            case "ls":
+                out.append("cannot access {file_error.filename!r}");
+                break;
+            case "touch":
+                out.append("cannot touch {file_error.filename!r}");
+                break;
+            case "mkdir":
+                out.append("cannot create directory {file_error.filename!r}");
+                break;
+            case "rm":
+                out.append("cannot remove {file_error.filename!r}");
+                break;
+            default:
+                out.append("{file_error.filename}");
+                break;
+        }
+        out.append(": {file_error.strerror}\", file=sys.stderr)");
+    }
+
+    private static void addNativeImports(Node ast, Set<String> modules) {
+        switch (ast.operator) {
+            case "ls":
+                modules.add("os");
+                modules.add("sys");
+                break;
+            case "cat":
+                modules.add("shutil");
+                modules.add("sys");
+                break;
+            case "touch":
+                modules.add("pathlib");
+                modules.add("sys");
+                break;
+            case "mkdir":
+                modules.add("os");
+                modules.add("sys");
+                break;
+            case "rm":
+                modules.add("os");
+                modules.add("sys");
+                if (ast.text.contains("f")) {
+                    modules.add("contextlib");
+                }
+                if (ast.text.contains("r")) {
+                    modules.add("shutil");
+                }
+                break;
+        }
+    }
+
+    // A command operand as a Python str, whatever the word's type
+    private static void appendPath(Node word, StringBuilder out) {
+        if ("variable".equals(word.type)) {
+            out.append("str(").append(word.variable).append(")");
+        } else {
+            appendString(List.of(word), false, '"', out);
+        }
+    }
+
+    public static void generateRedirectOutput(Node ast, int indentLevel, StringBuilder out) {
+        indent(indentLevel, out);
+        out.append("with open(");
+        generateExpression(ast.value, out);
+        out.append(", '").append(">>".equals(ast.operator) ? "a" : "w").append("') as f:\n");
+        indent(indentLevel + 1, out);
+
+        if ("echo".equals(ast.content.type)) {
+            out.append("print(");
+            if (!ast.content.value.children.isEmpty()) {
+                appendString(ast.content.value.children, false, '"', out);
+                out.append(", ");
+            }
+            out.append("file=f)");
+        } else {
+            out.append("f.write(subprocess.check_output(");
+            appendShellCommand(ast.content, '"', out);
+            out.append(", shell=True).decode('utf-8'))");
+        }
     }
-    
-    public static String generateFunctionCall(Node ast) {
-        String args = (ast.arguments != null) ? String.join(", ", ast.arguments) : "";
-        return ast.functionName + "(" + args + ")";
+
+    // Runs the stages as a Popen chain with explicit argv and OS pipes between them, without a shell. A
+    // trailing run of grep / sort / head / wc -l stages runs in-process instead, as generators over the last
+    // process's output lines. A stage that needs the shell (globs, $( ), ~ ...) sends the whole pipeline to
+    // a single shell.
+    public static void generatePipeline(Node ast, int indentLevel, StringBuilder out) {
+        List<Node> stages = ast.children;
+        if (!isArgvPipeline(stages)) {
+            indent(indentLevel, out);
+            out.append("subprocess.run(");
+            appendShellCommand(ast, '"', out);
+            out.append(", shell=True)");
+            return;
+        }
+
+        int processes = firstInProcessStage(stages);
+        for (int i = 1; i <= processes; i++) {
+            indent(indentLevel, out);
+            out.append('p').append(i).append(" = subprocess.Popen(");
+            appendArgv(stages.get(i - 1), out);
+            if (i > 1) {
+                out.append(", stdin=p").append(i - 1).append(".stdout");
+            }
+            if (i < stages.size()) {
+                out.append(i < processes ? ", stdout=subprocess.PIPE" : ", stdout=subprocess.PIPE, text=True");
+            }
+            out.append(")\n");
+            if (i > 1) {
+                // Only the next process holds the read end now, so the writer gets SIGPIPE if it exits early
+                indent(indentLevel, out);
+                out.append('p').append(i - 1).append(".stdout.close()\n");
+            }
+        }
+
+        if (processes < stages.size()) {
+            indent(indentLevel, out);
+            out.append("stage_lines = (line.rstrip(\"\\n\") for line in p").append(processes).append(".stdout)\n");
+            for (int i = processes; i < stages.size(); i++) {
+                indent(indentLevel, out);
+                generateFilterStage(stages.get(i), out);
+                out.append('\n');
+            }
+            if (!"wc".equals(filterOf(stages.get(stages.size() - 1), true))) {
+                indent(indentLevel, out);
+                out.append("sys.stdout.writelines(line + \"\\n\" for line in stage_lines)\n");
+                indent(indentLevel, out);
+                out.append("sys.stdout.flush()\n");
+            }
+            indent(indentLevel, out);
+            out.append('p').append(processes).append(".stdout.close()\n");
+        }
+
+        for (int i = 1; i <= processes; i++) {
+            indent(indentLevel, out);
+            out.append('p').append(i).append(".wait()");
+            if (i < processes) {
+                out.append('\n');
+            }
+        }
+    }
+
+    // Every stage is a command or echo whose words can be passed as argv without shell expansion
+    private static boolean isArgvPipeline(List<Node> stages) {
+        for (Node stage : stages) {
+            if (!"command".equals(stage.type) && !"echo".equals(stage.type)) {
+                return false;
+            }
+            for (Node word : stage.value.children) {
+                switch (word.type) {
+                    case "literal":
+                    case "variable":
+                        break;
+                    case "word":
+                        if (containsAny(word.text, "*?[]{}()~<>&;|")) {
+                            return false;
+                        }
+                        break;
+                    case "string":
+                        if (containsAny(word.text, "`\\") || word.text.contains("$(")) {
+                            return false;
+                        }
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Unquoted variables are split into words, as the shell would
+    private static void appendArgv(Node stage, StringBuilder out) {
+        out.append('[');
+        if ("echo".equals(stage.type)) {
+            out.append("\"echo\"");
+        }
+        List<Node> words = stage.value.children;
+        for (int i = 0; i < words.size(); i++) {
+            if (i > 0 || "echo".equals(stage.type)) {
+                out.append(", ");
+            }
+            Node word = words.get(i);
+            if ("variable".equals(word.type)) {
+                out.append("*str(").append(word.variable).append(").split()");
+            } else {
+                appendString(List.of(word), false, '"', out);
+            }
+        }
+        out.append(']');
+    }
+
+    // Index of the first stage of the trailing in-process run; the first stage always runs as a process
+    private static int firstInProcessStage(List<Node> stages) {
+        int first = stages.size();
+        while (first > 1 && filterOf(stages.get(first - 1), first == stages.size()) != null) {
+            first--;
+        }
+        // wc -l counts newlines, and only grep and sort end every line with one; after anything else
+        // (a final line may lack it) the whole pipeline runs as processes
+        int last = stages.size() - 1;
+        if (first <= last && "wc".equals(filterOf(stages.get(last), true))) {
+            String before = first < last ? filterOf(stages.get(last - 1), false) : null;
+            if (!"grep".equals(before) && !"sort".equals(before)) {
+                return stages.size();
+            }
+        }
+        return first;
+    }
+
+    // "grep", "head", "sort" or "wc" when the stage can run as a Python generator, otherwise null.
+    // grep takes one pattern with -v, -i and -F; without -F the pattern must have no regex syntax, so a
+    // substring test matches exactly what grep would. head takes -n N, sort takes -r, and wc -l must be last.
+    private static String filterOf(Node stage, boolean last) {
+        if (!"command".equals(stage.type) || stage.value.children.isEmpty() || !"word".equals(stage.value.children.get(0).type)) {
+            return null;
+        }
+        List<Node> words = stage.value.children;
+        switch (words.get(0).text) {
+            case "grep": {
+                StringBuilder options = new StringBuilder();
+                int i = 1;
+                while (i < words.size() && "word".equals(words.get(i).type) && words.get(i).text.startsWith("-")) {
+                    options.append(words.get(i).text, 1, words.get(i).text.length());
+                    i++;
+                }
+                if (i != words.size() - 1 || options.chars().anyMatch(c -> "vFi".indexOf(c) < 0)) {
+                    return null;
+                }
+                Node pattern = words.get(i);
+                boolean literal = options.indexOf("F") >= 0
+                        || ("word".equals(pattern.type) || "string".equals(pattern.type) || "literal".equals(pattern.type))
+                           && !containsAny(pattern.text, ".[]*^$\\+?(){}|");
+                return literal ? "grep" : null;
+            }
+            case "head":
+                return words.size() == 1 || words.size() == 3 && "word".equals(words.get(1).type)
+                        && "-n".equals(words.get(1).text) && "literal".equals(words.get(2).type) ? "head" : null;
+            case "sort":
+                return words.size() == 1 || words.size() == 2 && "word".equals(words.get(1).type)
+                        && "-r".equals(words.get(1).text) ? "sort" : null;
+            case "wc":
+                return last && words.size() == 2 && "word".equals(words.get(1).type)
+                        && "-l".equals(words.get(1).text) ? "wc" : null;
+            default:
+                return null;
+        }
+    }
+
+    private static void generateFilterStage(Node stage, StringBuilder out) {
+        List<Node> words = stage.value.children;
+        switch (filterOf(stage, true)) {
+            case "grep": {
+                Node pattern = words.get(words.size() - 1);
+                StringBuilder options = new StringBuilder();
+                for (int i = 1; i < words.size() - 1; i++) {
+                    options.append(words.get(i).text);
+                }
+                boolean ignoreCase = options.indexOf("i") >= 0;
+                out.append("stage_lines = (line for line in stage_lines if ");
+                appendPath(pattern, out);
+                out.append(ignoreCase ? ".lower()" : "").append(options.indexOf("v") >= 0 ? " not in " : " in ")
+                   .append(ignoreCase ? "line.lower())" : "line)");
+                break;
+            }
+            case "head":
+                out.append("stage_lines = itertools.islice(stage_lines, ")
+                   .append(words.size() == 3 ? words.get(2).text : "10").append(")");
+                break;
+            case "sort":
+                out.append(words.size() == 2 ? "stage_lines = sorted(stage_lines, reverse=True)" : "stage_lines = sorted(stage_lines)");
+                break;
+            default:  // wc -l, always the last stage
+                out.append("print(sum(1 for _ in stage_lines), flush=True)");
+                break;
+        }
+    }
+
+    // subprocess for any pipeline; sys and itertools when its statement form writes lines or uses head.
+    // Output written in-process is flushed at once, so it stays ahead of what later processes print.
+    private static void addPipelineImports(Node pipeline, Set<String> modules) {
+        List<Node> stages = pipeline.children;
+        if (!isArgvPipeline(stages)) {
+            return;
+        }
+        int first = firstInProcessStage(stages);
+        for (int i = first; i < stages.size(); i++) {
+            if ("head".equals(filterOf(stages.get(i), true))) {
+                modules.add("itertools");
+            }
+        }
+        if (first < stages.size() && !"wc".equals(filterOf(stages.get(stages.size() - 1), true))) {
+            modules.add("sys");
+        }
+    }
+
+    // cmd1 && cmd2 runs as one shell line; with a test or other statements in it the chain becomes an if. The
+    // chain groups left to right, so the last command runs on the status of all the ones before it:
+    // a && b || c is 'if not (a and b): c'. test && stmt || stmt becomes if/else, as stmt can't fail.
+    private static void generateLogicalStatement(Node ast, int indentLevel, StringBuilder out, Deque<Runnable> pending) {
+        if (isShellCommand(ast)) {
+            generateCommand(ast, indentLevel, out);
+            return;
+        }
+
+        List<Node> operands = new ArrayList<>();
+        List<String> operators = new ArrayList<>();
+        flattenChain(ast, operands, operators);
+        int last = operands.size() - 1;
+
+        int then = conditionLength(operands, operators);
+        if (then < last) {
+            indent(indentLevel, out);
+            out.append("if ");
+            appendCondition(operands, operators, then, out);
+            out.append(":\n");
+            for (int i = then; i < last; i++) {
+                generateStatement(operands.get(i), indentLevel + 1, out, pending);
+                out.append("\n");
+            }
+            indent(indentLevel, out);
+            out.append("else:\n");
+            generateStatement(operands.get(last), indentLevel + 1, out, pending);
+            return;
+        }
+
+        if (!isConditionChain(operands, last)) {
+            throw new RuntimeException("Unsupported AST Node: " + ast.left.type + " " + ast.operator);
+        }
+        indent(indentLevel, out);
+        if ("&&".equals(ast.operator)) {
+            out.append("if ");
+            appendCondition(operands, operators, last, out);
+        } else if (last == 1 && !"test".equals(operands.get(0).type)) {
+            out.append("if not ");
+            appendCondition(operands, operators, last, out);
+        } else {
+            out.append("if not (");
+            appendCondition(operands, operators, last, out);
+            out.append(")");
+        }
+        out.append(":\n");
+        generateStatement(operands.get(last), indentLevel + 1, out, pending);
+    }
+
+    // The operands of a left-grouped chain in the order they run, with the operator before each but the first
+    private static void flattenChain(Node chain, List<Node> operands, List<String> operators) {
+        Node node = chain;
+        while ("logical_op".equals(node.type)) {
+            operands.add(node.right);
+            operators.add(node.operator);
+            node = node.left;
+        }
+        operands.add(node);
+        Collections.reverse(operands);
+        Collections.reverse(operators);
+    }
+
+    // How many operands make up the if's condition: all but the last, or in test && stmt && stmt || last only
+    // the ones before the statements, which run in the if and can't fail
+    private static int conditionLength(List<Node> operands, List<String> operators) {
+        int last = operands.size() - 1;
+        int then = last;
+        while (then > 1 && "&&".equals(operators.get(then - 2)) && isStatementOperand(operands.get(then - 1))) {
+            then--;
+        }
+        boolean ifElse = then < last && "||".equals(operators.get(last - 1)) && isConditionChain(operands, then);
+        return ifElse ? then : last;
+    }
+
+    // A Python statement that always succeeds, rather than a test or a command with an exit status
+    private static boolean isStatementOperand(Node operand) {
+        return "echo".equals(operand.type) || !("test".equals(operand.type) || isShellCommand(operand));
+    }
+
+    private static boolean isConditionChain(List<Node> operands, int count) {
+        for (int i = 0; i < count; i++) {
+            Node operand = operands.get(i);
+            if (!"test".equals(operand.type) && !isShellCommand(operand)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The first count operands as one Python condition; and/or short-circuit the way && and || skip commands
+    private static void appendCondition(List<Node> operands, List<String> operators, int count, StringBuilder out) {
+        StringBuilder condition = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                String operator = operators.get(i - 1);
+                if (i > 1 && !operator.equals(operators.get(i - 2))) {
+                    condition.insert(0, '(').append(')');  // Python binds 'and' tighter; Bash doesn't
+                }
+                condition.append("&&".equals(operator) ? " and " : " or ");
+            }
+            Node operand = operands.get(i);
+            if ("test".equals(operand.type) && count == 1) {
+                generateExpression(operand.condition, condition);
+            } else if ("test".equals(operand.type)) {
+                generateOperand(operand.condition, operators.get(Math.max(0, i - 1)), condition);
+            } else {
+                condition.append("subprocess.run(");
+                appendShellCommand(operand, '"', condition);
+                condition.append(", shell=True).returncode == 0");
+            }
+        }
+        out.append(condition);
+    }
+
+    public static void generateReturnStatement(Node ast, int indentLevel, StringBuilder out) {
+        indent(indentLevel, out);
+        out.append("return");
+        if (ast.value != null) {
+            out.append(' ');
+            generateExpression(ast.value, out);
+        }
+    }
+
+    public static void generateExitStatement(Node ast, int indentLevel, StringBuilder out) {
+        indent(indentLevel, out);
+        out.append("sys.exit(");
+        generateExpression(ast.exitCode, out);
+        out.append(")");
+    }
+
+    // Values and conditions
+    public static void generateExpression(Node ast, StringBuilder out) {
+        switch (ast.type) {
+            case "literal":
+            case "arithmetic":
+                out.append(ast.text);
+                break;
+            case "word":
+                if (isNumber(ast.text)) {
+                    out.append(ast.text);
+                } else {
+                    appendString(List.of(ast), false, '"', out);
+                }
+                break;
+            case "string":
+                // "$name" on its own is just the variable
+                Matcher single = VARIABLE_REFERENCE.matcher(ast.text);
+                if (single.matches()) {
+                    out.append(single.group(1) != null ? single.group(1) : single.group(2));
+                } else {
+                    appendString(List.of(ast), false, '"', out);
+                }
+                break;
+            case "words":
+                appendString(ast.children, false, '"', out);
+                break;
+            case "variable":
+                out.append(ast.variable);
+                break;
+            case "subshell":
+                appendSubshell(ast, '"', out);
+                break;
+            case "glob":
+                appendString(List.of(ast), false, '"', out);  // only for-lists and commands expand globs
+                break;
+            case "range":
+                generateRange(ast, out);
+                break;
+            case "counted_range":
+                generateCountedRange(ast, out);
+                break;
+            case "comparison_op":
+                generateExpression(ast.left, out);
+                out.append(' ').append(ast.operator).append(' ');
+                generateExpression(ast.right, out);
+                break;
+            case "logical_op":
+                generateOperand(ast.left, ast.operator, out);
+                out.append("&&".equals(ast.operator) ? " and " : " or ");
+                generateOperand(ast.right, ast.operator, out);
+                break;
+            case "not":
+                out.append("not ");
+                generateOperand(ast.value, null, out);
+                break;
+            case "unary_test":
+                generateUnaryTest(ast, out);
+                break;
+            default:
+                throw new RuntimeException("Unsupported AST Node: " + ast.type);
+        }
+    }
+
+    // Bash evaluates && and || left to right at equal precedence; Python binds 'and' tighter
+    private static void generateOperand(Node ast, String parentOperator, StringBuilder out) {
+        boolean parenthesize = "logical_op".equals(ast.type) && !ast.operator.equals(parentOperator);
+        if (parenthesize) {
+            out.append("(");
+        }
+        generateExpression(ast, out);
+        if (parenthesize) {
+            out.append(")");
+        }
+    }
+
+    private static void generateUnaryTest(Node ast, StringBuilder out) {
+        switch (ast.operator) {
+            case "-z": out.append("len("); generateExpression(ast.right, out); out.append(") == 0"); break;
+            case "-n": out.append("len("); generateExpression(ast.right, out); out.append(") > 0"); break;
+            case "-f": out.append("os.path.isfile("); generateExpression(ast.right, out); out.append(")"); break;
+            case "-d": out.append("os.path.isdir("); generateExpression(ast.right, out); out.append(")"); break;
+            case "-e": out.append("os.path.exists("); generateExpression(ast.right, out); out.append(")"); break;
+            case "-s": out.append("os.path.getsize("); generateExpression(ast.right, out); out.append(") > 0"); break;
+            default: throw new RuntimeException("Unsupported test operator: " + ast.operator);
+        }
+    }
+
+    // {a..b} is inclusive and counts down when a > b
+    private static void generateRange(Node ast, StringBuilder out) {
+        int start = Integer.parseInt(ast.left.text);
+        int end = Integer.parseInt(ast.right.text);
+        if (start <= end) {
+            out.append("range(").append(start).append(", ").append(end + 1).append(")");
+        } else {
+            out.append("range(").append(start).append(", ").append(end - 1).append(", -1)");
+        }
+    }
+
+    // while [ $i -le n ] counting up by one: range(i, n + 1); counting down: range(i, n - 1, -1)
+    private static void generateCountedRange(Node ast, StringBuilder out) {
+        out.append("range(");
+        generateExpression(ast.left, out);
+        out.append(", ");
+        appendRangeStop(ast, out);
+        out.append(ast.operator.startsWith("<") ? ")" : ", -1)");
+    }
+
+    // The first value the counter doesn't reach
+    private static void appendRangeStop(Node ast, StringBuilder out) {
+        int past = switch (ast.operator) {
+            case "<=" -> 1;
+            case ">=" -> -1;
+            default -> 0;
+        };
+        Node bound = ast.right;
+        if ("literal".equals(bound.type)) {
+            out.append(Integer.parseInt(bound.text) + past);
+            return;
+        }
+        generateExpression(bound, out);
+        if (past != 0) {
+            out.append(past > 0 ? " + 1" : " - 1");
+        }
+    }
+
+    private static void appendSubshell(Node ast, char quote, StringBuilder out) {
+        out.append("subprocess.check_output(");
+        appendShellCommand(ast.command, quote, out);
+        out.append(", shell=True).decode().rstrip()");
+    }
+
+    // The command line of a command, echo, pipeline or && / || chain as one Python string
+    private static void appendShellCommand(Node ast, char quote, StringBuilder out) {
+        List<Node> words = new ArrayList<>();
+        collectShellWords(ast, words);
+        appendString(words, true, quote, out);
+    }
+
+    private static void collectShellWords(Node ast, List<Node> words) {
+        switch (ast.type) {
+            case "command":
+                words.addAll(ast.value.children);
+                break;
+            case "echo":
+                words.add(new Node("word", "echo"));
+                words.addAll(ast.value.children);
+                break;
+            case "pipeline":
+                for (int i = 0; i < ast.children.size(); i++) {
+                    if (i > 0) {
+                        words.add(new Node("word", "|"));
+                    }
+                    collectShellWords(ast.children.get(i), words);
+                }
+                break;
+            case "logical_op": {
+                List<Node> operands = new ArrayList<>();
+                List<String> operators = new ArrayList<>();
+                flattenChain(ast, operands, operators);
+                for (int i = 0; i < operands.size(); i++) {
+                    if (i > 0) {
+                        words.add(new Node("word", operators.get(i - 1)));
+                    }
+                    collectShellWords(operands.get(i), words);
+                }
+                break;
+            }
+            case "redirect":
+                collectShellWords(ast.content, words);
+                words.add(new Node("word", ast.operator));
+                words.add(ast.value);
+                break;
+            default:
+                throw new RuntimeException("Unsupported AST Node in command: " + ast.type);
+        }
+    }
+
+    private static boolean isShellCommand(Node ast) {
+        switch (ast.type) {
+            case "command":
+            case "pipeline":
+            case "echo":
+                return true;
+            case "redirect":
+                return isShellCommand(ast.content);
+            case "logical_op":
+                Node node = ast;
+                for (; "logical_op".equals(node.type); node = node.left) {
+                    if (!isShellCommand(node.right)) {
+                        return false;
+                    }
+                }
+                return isShellCommand(node);
+            default:
+                return false;
+        }
     }
-    
 
-    public static String generateEcho(Node ast) {
-        return "print(" + (ast.value != null ? generatePythonCode(ast.value) : "''") + ")";
+    // Words joined by spaces as one string literal; an f-string when any word is interpolated
+    private static void appendString(List<Node> words, boolean shell, char quote, StringBuilder out) {
+        boolean interpolated = false;
+        for (Node word : words) {
+            if (isInterpolated(word)) {
+                interpolated = true;
+                break;
+            }
+        }
+
+        if (interpolated) {
+            out.append('f');
+        }
+        out.append(quote);
+        for (int i = 0; i < words.size(); i++) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            appendWordText(words.get(i), shell, quote, interpolated, out);
+        }
+        out.append(quote);
     }
 
-    public static String generateRedirectOutput(Node ast) {
-        return "with open('" + ast.file + "', 'w') as f:\n    f.write(str(" + 
-               (ast.content != null ? generatePythonCode(ast.content) : "''") + "))";
+    private static boolean isInterpolated(Node word) {
+        switch (word.type) {
+            case "variable":
+            case "arithmetic":
+            case "subshell":
+                return true;
+            case "string":
+                return word.text.indexOf('$') >= 0 && VARIABLE_REFERENCE.matcher(word.text).find();
+            default:
+                return false;
+        }
     }
-    
 
-    public static String generatePipeline(Node ast) {
-        return "import subprocess\n" +
-               "p1 = subprocess.Popen(" + (ast.command1 != null ? generatePythonCode(ast.command1) : "''") + 
-               ", stdout=subprocess.PIPE, shell=True)\n" +
-               "p2 = subprocess.Popen(" + (ast.command2 != null ? generatePythonCode(ast.command2) : "''") + 
-               ", stdin=p1.stdout, stdout=subprocess.PIPE, shell=True)\n" +
-               "p1.stdout.close()\n" +
-               "output, _ = p2.communicate()";
+    private static void appendWordText(Node word, boolean shell, char quote, boolean interpolated, StringBuilder out) {
+        switch (word.type) {
+            case "variable":
+                out.append('{').append(word.variable).append('}');
+                break;
+            case "arithmetic":
+                out.append('{').append(word.text).append('}');
+                break;
+            case "subshell":
+                out.append('{');
+                appendSubshell(word, quote == '"' ? '\'' : '"', out);
+                out.append('}');
+                break;
+            case "string":
+                // Inside a shell command line the quotes keep the string one argument
+                if (shell) {
+                    out.append('\\').append(quote);
+                }
+                appendText(word.text, quote, interpolated, true, out);
+                if (shell) {
+                    out.append('\\').append(quote);
+                }
+                break;
+            default:
+                appendText(word.text, quote, interpolated, false, out);
+                break;
+        }
     }
-    
 
-    public static String generateSubshell(Node ast) {
-        return "import subprocess\n" +
-               "output = subprocess.check_output(" + (ast.command != null ? generatePythonCode(ast.command) : "''") + ", shell=True).decode()";
+    // $name and ${name} become {name} in f-strings; quotes and literal braces are escaped
+    private static void appendText(String text, char quote, boolean interpolated, boolean expandVariables, StringBuilder out) {
+        int last = 0;
+        if (interpolated && expandVariables && text.indexOf('$') >= 0) {
+            Matcher m = VARIABLE_REFERENCE.matcher(text);
+            while (m.find()) {
+                appendEscaped(text, last, m.start(), quote, interpolated, out);
+                out.append('{').append(m.group(1) != null ? m.group(1) : m.group(2)).append('}');
+                last = m.end();
+            }
+        }
+        appendEscaped(text, last, text.length(), quote, interpolated, out);
     }
 
-    public static String generateLogicalOperator(Node ast) {
-        return generatePythonCode(ast.left) + ("&&".equals(ast.operator) ? " and " : " or ") + generatePythonCode(ast.right);
+    private static void appendEscaped(String text, int start, int end, char quote, boolean interpolated, StringBuilder out) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < end) {
+                out.append(c).append(text.charAt(++i)); // Existing escapes pass through
+                continue;
+            }
+            if (c == quote) {
+                out.append('\\');
+            } else if (interpolated && (c == '{' || c == '}')) {
+                out.append(c);
+            }
+            out.append(c);
+        }
     }
 
-    public static String generateComparisonOperator(Node ast) {
-        return generatePythonCode(ast.left) + " " + ast.operator + " " + generatePythonCode(ast.right);
+    static boolean containsAny(String text, String characters) {
+        for (int i = 0; i < text.length(); i++) {
+            if (characters.indexOf(text.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    public static String generateReturnStatement(Node ast) {
-        return "return " + (ast.value != null ? generatePythonCode(ast.value) : "None");
+    private static boolean isNumber(String text) {
+        if (text == null || text.isEmpty()) {
+            return false;
+        }
+        try {
+            Double.parseDouble(text);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
-    public static String generateExitStatement(Node ast) {
-        return "import sys\nsys.exit(" + generatePythonCode(ast.exitCode) + ")";
+    // Indentation is copied out of one precomputed run of spaces, so no per-line String is created;
+    // deeper levels take it in table-sized pieces
+    private static void indent(int indentLevel, StringBuilder out) {
+        int spaces = indentLevel * INDENT_WIDTH;
+        while (spaces > INDENTS.length()) {
+            out.append(INDENTS);
+            spaces -= INDENTS.length();
+        }
+        out.append(INDENTS, 0, spaces);
     }
 }
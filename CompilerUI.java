@@ -1,4 +1,7 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.DefaultCaret;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -6,6 +9,9 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CompilerUI {
     private JFrame frame;
@@ -13,6 +19,17 @@ public class CompilerUI {
     private JTextArea pythonOutput;
     private boolean isDarkMode = false;
 
+    // Live conversion: edits restart a short debounce timer, and conversions run off the EDT
+    private static final int DEBOUNCE_MILLIS = 75;
+    private final ExecutorService converter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "transpiler-ui");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final IncrementalTranspiler transpiler = new IncrementalTranspiler(); // only touched by the converter thread
+    private final AtomicLong generation = new AtomicLong();
+    private Timer debounce;
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new CompilerUI().createAndShowGUI());
     }
@@ -30,6 +47,27 @@ public class CompilerUI {
         bashInput = new JTextArea();
         pythonOutput = new JTextArea();
         pythonOutput.setEditable(false);
+        // Keep the reader's scroll position while the output refreshes on every pause in typing
+        ((DefaultCaret) pythonOutput.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+
+        debounce = new Timer(DEBOUNCE_MILLIS, e -> scheduleConversion());
+        debounce.setRepeats(false);
+        bashInput.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
 
         JScrollPane leftScroll = new JScrollPane(bashInput);
         JScrollPane rightScroll = new JScrollPane(pythonOutput);
@@ -66,14 +104,23 @@ public class CompilerUI {
     }
 
     private void runCompiler() {
-        try {
-            Files.write(Paths.get("bash.sh"), bashInput.getText().getBytes(StandardCharsets.UTF_8));
-            Main.main(new String[]{}); // Run your compiler
-            String pythonCode = new String(Files.readAllBytes(Paths.get("output.py")), StandardCharsets.UTF_8);
-            pythonOutput.setText(pythonCode);
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(frame, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        debounce.stop();
+        scheduleConversion();
+    }
+
+    // Called on the EDT: snapshots the text and converts it in the background. Only the newest
+    // result is shown, so a slow conversion can never overwrite output for later edits.
+    private void scheduleConversion() {
+        String bash = bashInput.getText();
+        long current = generation.incrementAndGet();
+        converter.execute(() -> {
+            String pythonCode = transpiler.transpile(bash);
+            SwingUtilities.invokeLater(() -> {
+                if (generation.get() == current) {
+                    pythonOutput.setText(pythonCode);
+                }
+            });
+        });
     }
 
     private void openManual() {
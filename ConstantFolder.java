@@ -0,0 +1,575 @@
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Folds what a script computes from constants at transpile time, so the Python doesn't redo it on every run:
+// $(( )) arithmetic on numbers becomes its value, tests on constants become True or False, if/elif branches
+// and while loops whose test never passes are dropped, a branch whose test always passes replaces its if,
+// and a {n..n} loop becomes its body. Scripts generated from templates are full of these.
+//
+// Arithmetic follows Bash: 64-bit integers, division truncating toward zero, a leading 0 meaning octal
+// (08 is a syntax error). Anything that would overflow, divide by zero or that this pass doesn't parse is left
+// for Python to compute; what can't be folded is still rewritten in Python syntax, with / and % as int(a / b)
+// and int(math.fmod(a, b)) so they truncate the way Bash does.
+public class ConstantFolder {
+    private static final String TRUE = "True";
+    private static final String FALSE = "False";
+    private static final Pattern DECIMAL = Pattern.compile("-?\\d{1,18}");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_]\\w*");
+
+    // Python precedence of an arithmetic term's text, loosest first
+    private static final int SUM = 1;
+    private static final int PRODUCT = 2;
+    private static final int UNARY = 3;
+    private static final int POWER = 4;
+    private static final int ATOM = 5;
+
+    private final Deque<Node> work = new ArrayDeque<>();  // compound statements whose bodies are still to fold
+
+    // Runs on each top-level statement as the parser returns it; null when none of it can ever run.
+    // A statement that folds into several (an if whose test always passes) comes back as a block.
+    // Arithmetic is already folded: the parser calls foldArithmetic on each $(( )) as it reads it.
+    public Node fold(Node statement) {
+        if (!isCompound(statement)) {
+            return statement;  // most statements: nothing to do, nothing allocated
+        }
+        Node replacement = foldStatement(statement);
+        if (replacement == statement) {
+            foldBodies(statement);
+            return statement;
+        }
+        if (replacement == null) {
+            return null;
+        }
+
+        // What replaced it is folded like the statements of a block
+        Node block = replacement;
+        if (!"block".equals(replacement.type)) {
+            block = new Node("block");
+            block.children = new ArrayList<>(1);
+            block.children.add(replacement);
+        }
+        foldBodies(block);
+        switch (block.children.size()) {
+            case 0: return null;
+            case 1: return block.children.get(0);
+            default: return block;
+        }
+    }
+
+    private void foldBodies(Node statement) {
+        work.push(statement);
+        while (!work.isEmpty()) {
+            Node node = work.pop();
+            switch (node.type) {
+                case "block":
+                    foldStatements(node.children);
+                    break;
+                case "if":
+                    work.push(node.body);
+                    if (node.elseBody != null) {
+                        work.push(node.elseBody);
+                    }
+                    break;
+                case "while":
+                case "for":
+                case "function_def":
+                    work.push(node.body);
+                    break;
+                case "case":
+                    for (Node arm : node.children) {
+                        work.push(arm.body);
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static boolean isCompound(Node statement) {
+        switch (statement.type) {
+            case "block":
+            case "if":
+            case "while":
+            case "for":
+            case "case":
+            case "function_def":
+            case "logical_op":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Folds the block's statements in place; a branch that always runs takes its if's place and is folded in turn
+    private void foldStatements(List<Node> statements) {
+        int i = 0;
+        while (i < statements.size()) {
+            Node statement = statements.get(i);
+            Node replacement = foldStatement(statement);
+            if (replacement == statement) {
+                if (isCompound(statement)) {
+                    work.push(statement);
+                }
+                i++;
+            } else if (replacement == null) {
+                statements.remove(i);
+            } else if ("block".equals(replacement.type)) {
+                statements.remove(i);
+                statements.addAll(i, replacement.children);
+            } else {
+                statements.set(i, replacement);
+            }
+        }
+    }
+
+    // The statement itself, what replaces it, or null when it can never run
+    private static Node foldStatement(Node statement) {
+        switch (statement.type) {
+            case "if":
+                return foldIf(statement);
+            case "while": {
+                Node condition = foldCondition(statement.condition);
+                if (isConstant(condition) && !isTrue(condition)) {
+                    return null;
+                }
+                statement.condition = condition;
+                return statement;
+            }
+            case "for":
+                return unrollSingleIteration(statement);
+            case "logical_op":
+                return foldTestChain(statement);
+            default:
+                return statement;
+        }
+    }
+
+    // Branches whose test never passes are dropped; the first whose test always passes becomes the else
+    private static Node foldIf(Node ifNode) {
+        Node first = null;
+        Node last = null;
+        Node branch = ifNode;
+        while (true) {
+            Node condition = foldCondition(branch.condition);
+            Node next = branch.elseBody;
+            if (isTrue(condition)) {
+                if (last == null) {
+                    return branch.body;
+                }
+                last.elseBody = branch.body;
+                return first;
+            }
+            if (!isConstant(condition)) {
+                branch.condition = condition;
+                if (last == null) {
+                    first = branch;
+                } else {
+                    last.elseBody = branch;
+                }
+                last = branch;
+            }
+
+            if (next == null || !"if".equals(next.type)) {
+                // next is the else block, or there is none
+                if (last == null) {
+                    return next;
+                }
+                last.elseBody = next;
+                return first;
+            }
+            branch = next;
+        }
+    }
+
+    // A chain starting with a constant test: && commands after a false test and || commands after a true one are
+    // skipped, and the chain starts again at the first command that runs, or is dropped when none does
+    private static Node foldTestChain(Node logical) {
+        Node first = logical;
+        while ("logical_op".equals(first.left.type)) {
+            first = first.left;
+        }
+        if (!"test".equals(first.left.type)) {
+            return logical;
+        }
+        Node condition = foldCondition(first.left.condition);
+        if (!isConstant(condition)) {
+            first.left.condition = condition;
+            return logical;
+        }
+
+        // The chain's operators innermost first; the command after each is its right
+        List<Node> links = new ArrayList<>();
+        for (Node link = logical; "logical_op".equals(link.type); link = link.left) {
+            links.add(link);
+        }
+        boolean status = isTrue(condition);
+        for (int i = links.size() - 1; i >= 0; i--) {
+            Node link = links.get(i);
+            if ("&&".equals(link.operator) == status) {
+                if (i == 0) {
+                    return link.right;
+                }
+                links.get(i - 1).left = link.right;
+                return logical;
+            }
+        }
+        return null;
+    }
+
+    // for i in {n..n} runs its body once with i set; break or continue in it would need the loop
+    private static Node unrollSingleIteration(Node loop) {
+        if (!"range".equals(loop.iterable.type)) {
+            return loop;
+        }
+        int start = Integer.parseInt(loop.iterable.left.text);
+        if (start != Integer.parseInt(loop.iterable.right.text) || containsLoopControl(loop.body)) {
+            return loop;
+        }
+
+        Node assign = new Node("assign");
+        assign.variable = loop.variable;
+        assign.value = new Node("literal", Integer.toString(start));
+        Node block = new Node("block");
+        block.children = new ArrayList<>(loop.body.children.size() + 1);
+        block.children.add(assign);
+        block.children.addAll(loop.body.children);
+        return block;
+    }
+
+    // break or continue that belongs to this loop, not to a loop nested in it
+    private static boolean containsLoopControl(Node body) {
+        Deque<Node> work = new ArrayDeque<>();
+        work.push(body);
+        while (!work.isEmpty()) {
+            Node node = work.pop();
+            switch (node.type) {
+                case "break":
+                case "continue":
+                    return true;
+                case "while":
+                case "for":
+                    continue;
+            }
+            if (node.children != null) {
+                node.children.forEach(work::push);
+            }
+            if (node.body != null) {
+                work.push(node.body);
+            }
+            if (node.elseBody != null) {
+                work.push(node.elseBody);
+            }
+            if (node.right != null) {
+                work.push(node.right);
+            }
+        }
+        return false;
+    }
+
+    // Conditions
+
+    private static boolean isConstant(Node condition) {
+        return "literal".equals(condition.type) && (TRUE.equals(condition.text) || FALSE.equals(condition.text));
+    }
+
+    private static boolean isTrue(Node condition) {
+        return "literal".equals(condition.type) && TRUE.equals(condition.text);
+    }
+
+    private static Node constant(boolean value) {
+        return new Node("literal", value ? TRUE : FALSE);
+    }
+
+    // The condition with its constant parts evaluated: a True or False literal when nothing else is left.
+    // Tests have no side effects, so a && False is False without evaluating a.
+    private static Node foldCondition(Node condition) {
+        switch (condition.type) {
+            case "logical_op": {
+                boolean and = "&&".equals(condition.operator);
+                Node left = foldCondition(condition.left);
+                if (isConstant(left)) {
+                    return isTrue(left) == and ? foldCondition(condition.right) : left;
+                }
+                Node right = foldCondition(condition.right);
+                if (isConstant(right)) {
+                    return isTrue(right) == and ? left : right;
+                }
+                condition.left = left;
+                condition.right = right;
+                return condition;
+            }
+            case "not": {
+                Node operand = foldCondition(condition.value);
+                if (isConstant(operand)) {
+                    return constant(!isTrue(operand));
+                }
+                condition.value = operand;
+                return condition;
+            }
+            case "comparison_op": {
+                Boolean result = compare(condition);
+                return result != null ? constant(result) : condition;
+            }
+            case "unary_test": {
+                String text = constantText(condition.right);
+                if (text != null && "-z".equals(condition.operator)) {
+                    return constant(text.isEmpty());
+                }
+                if (text != null && "-n".equals(condition.operator)) {
+                    return constant(!text.isEmpty());
+                }
+                return condition;
+            }
+            default: {
+                // [ word ] tests that the word isn't empty
+                String text = constantText(condition);
+                return text != null ? constant(!text.isEmpty()) : condition;
+            }
+        }
+    }
+
+    // Null unless both operands are constants the operator is sure to accept
+    private static Boolean compare(Node comparison) {
+        String left = constantText(comparison.left);
+        String right = constantText(comparison.right);
+        if (left == null || right == null || comparison.text == null) {
+            return null;
+        }
+        switch (comparison.text) {
+            case "=":
+            case "==":
+                return left.equals(right);
+            case "!=":
+                return !left.equals(right);
+        }
+
+        Long a = integer(left);
+        Long b = integer(right);
+        if (a == null || b == null) {
+            return null;  // [ x -eq 1 ] is an error in Bash, not a comparison
+        }
+        switch (comparison.text) {
+            case "-eq": return a.equals(b);
+            case "-ne": return !a.equals(b);
+            case "-lt": return a < b;
+            case "-le": return a <= b;
+            case "-gt": return a > b;
+            case "-ge": return a >= b;
+            default: return null;
+        }
+    }
+
+    // The text a test operand always has, or null when it depends on the environment
+    private static String constantText(Node operand) {
+        switch (operand.type) {
+            case "literal":
+            case "word":
+                return operand.text;
+            case "string":
+                return CodeGenerator.containsAny(operand.text, "$`\\") ? null : operand.text;
+            default:
+                return null;
+        }
+    }
+
+    // test compares decimal integers, leading zeros included
+    private static Long integer(String text) {
+        if (!DECIMAL.matcher(text).matches()) {
+            return null;
+        }
+        return Long.parseLong(text);
+    }
+
+    // Arithmetic
+
+    // $(( )) as the parser read it: a literal when it has a constant value, otherwise rewritten in Python syntax
+    public static Node foldArithmetic(Node arithmetic) {
+        Term term = new Expression(arithmetic.text.split(" ")).parse();
+        if (term != null) {
+            if (term.value != null) {
+                arithmetic.type = "literal";
+            }
+            arithmetic.text = term.text;
+        }
+        return arithmetic;
+    }
+
+    // An arithmetic value: known when value is set, otherwise Python code
+    private static final class Term {
+        final Long value;
+        final String text;
+        final int precedence;
+
+        Term(Long value, String text, int precedence) {
+            this.value = value;
+            this.text = text;
+            this.precedence = precedence;
+        }
+
+        static Term of(long value) {
+            return new Term(value, Long.toString(value), value < 0 ? UNARY : ATOM);
+        }
+
+        // The text, parenthesized if it binds looser than its position needs
+        String at(int precedence) {
+            return this.precedence >= precedence ? text : "(" + text + ")";
+        }
+    }
+
+    // Recursive descent over the parser's space-separated tokens, Bash precedence:
+    // sum := product (("+" | "-") product)*, product := power (("*" | "/" | "%") power)*,
+    // power := unary ("**" power)?, unary := ("+" | "-") unary | number | name | "(" sum ")".
+    // Null from any rule means the expression uses something this pass doesn't handle.
+    private static final class Expression {
+        private final String[] tokens;
+        private int index;
+
+        Expression(String[] tokens) {
+            this.tokens = tokens;
+        }
+
+        Term parse() {
+            Term term = sum();
+            return index == tokens.length ? term : null;
+        }
+
+        private boolean at(String token) {
+            return index < tokens.length && tokens[index].equals(token);
+        }
+
+        private Term sum() {
+            Term left = product();
+            while (left != null && (at("+") || at("-"))) {
+                String operator = tokens[index++];
+                left = binary(left, operator, product());
+            }
+            return left;
+        }
+
+        private Term product() {
+            Term left = power();
+            while (left != null && (at("*") || at("/") || at("%"))) {
+                String operator = tokens[index++];
+                left = binary(left, operator, power());
+            }
+            return left;
+        }
+
+        // Right-associative, and looser than unary minus: -2 ** 2 is 4
+        private Term power() {
+            Term base = unary();
+            if (base != null && at("**")) {
+                index++;
+                return binary(base, "**", power());
+            }
+            return base;
+        }
+
+        private Term unary() {
+            if (at("+")) {
+                index++;
+                return unary();
+            }
+            if (at("-")) {
+                index++;
+                Term operand = unary();
+                if (operand == null) {
+                    return null;
+                }
+                if (operand.value != null && operand.value != Long.MIN_VALUE) {
+                    return Term.of(-operand.value);
+                }
+                return new Term(null, "-" + operand.at(UNARY), UNARY);
+            }
+            if (at("(")) {
+                index++;
+                Term inner = sum();
+                if (inner == null || !at(")")) {
+                    return null;
+                }
+                index++;
+                return inner;
+            }
+            if (index == tokens.length) {
+                return null;
+            }
+
+            String token = tokens[index++];
+            if (DIGITS.matcher(token).matches()) {
+                boolean octal = token.length() > 1 && token.charAt(0) == '0';
+                if (octal && CodeGenerator.containsAny(token, "89")) {
+                    throw new RuntimeException("Syntax Error: " + token + ": value too great for base (error token is \""
+                            + token + "\")");
+                }
+                // Bash keeps the low 64 bits of a constant that doesn't fit
+                return Term.of(new BigInteger(token, octal ? 8 : 10).longValue());
+            }
+            return NAME.matcher(token).matches() ? new Term(null, token, ATOM) : null;
+        }
+
+        private static Term binary(Term left, String operator, Term right) {
+            if (right == null) {
+                return null;
+            }
+            if (left.value != null && right.value != null) {
+                Long value = evaluate(left.value, operator, right.value);
+                if (value != null) {
+                    return Term.of(value);
+                }
+            }
+
+            switch (operator) {
+                case "+":
+                case "-":
+                    return new Term(null, left.at(SUM) + " " + operator + " " + right.at(SUM + 1), SUM);
+                case "**":
+                    return new Term(null, left.at(ATOM) + " ** " + right.at(UNARY), POWER);
+                // Python's // and % round toward minus infinity, Bash's toward zero: -7 / 2 is -3 and -7 % 2 is -1.
+                // Exact while both operands stay below 2 ** 53
+                case "/":
+                    return new Term(null, "int(" + left.at(PRODUCT) + " / " + right.at(PRODUCT + 1) + ")", ATOM);
+                case "%":
+                    return new Term(null, "int(math.fmod(" + left.text + ", " + right.text + "))", ATOM);
+                default:
+                    return new Term(null, left.at(PRODUCT) + " * " + right.at(PRODUCT + 1), PRODUCT);
+            }
+        }
+
+        // Null when Bash would fail or the result doesn't fit in 64 bits
+        private static Long evaluate(long a, String operator, long b) {
+            try {
+                switch (operator) {
+                    case "+": return Math.addExact(a, b);
+                    case "-": return Math.subtractExact(a, b);
+                    case "*": return Math.multiplyExact(a, b);
+                    case "/": return b == 0 || (a == Long.MIN_VALUE && b == -1) ? null : a / b;
+                    case "%": return b == 0 || (a == Long.MIN_VALUE && b == -1) ? null : a % b;
+                    default: return power(a, b);
+                }
+            } catch (ArithmeticException e) {
+                return null;
+            }
+        }
+
+        private static Long power(long base, long exponent) {
+            if (exponent < 0) {
+                return null;
+            }
+            if (base == 0 || base == 1) {
+                return exponent == 0 ? 1 : base;
+            }
+            if (base == -1) {
+                return exponent % 2 == 0 ? 1L : -1L;
+            }
+            long result = 1;
+            for (long i = 0; i < exponent; i++) {
+                result = Math.multiplyExact(result, base);  // overflows within 63 steps
+            }
+            return result;
+        }
+    }
+}
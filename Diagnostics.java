@@ -0,0 +1,91 @@
+import java.util.Locale;
+
+public class Diagnostics {
+    public enum Level {
+        OFF,
+        WARN,
+        INFO,
+        DEBUG,
+        TRACE     // Per-character / per-token output
+    }
+
+    public interface Sink {
+        void log(Level level, String message);
+    }
+
+    public static final Sink STDOUT = (level, message) -> System.out.println(message);
+    public static final Sink STDERR = (level, message) -> System.err.println(message);
+
+    public static final Diagnostics OFF = new Diagnostics(Level.OFF, STDOUT);
+
+    // Default level comes from -Dtranspiler.log=<LEVEL>; without it the lexer and parser stay silent
+    private static volatile Diagnostics defaultDiagnostics = new Diagnostics(levelFromProperty(), STDOUT);
+
+    private final Level level;
+    private final Sink sink;
+
+    public Diagnostics(Level level, Sink sink) {
+        this.level = level;
+        this.sink = sink;
+    }
+
+    public static Diagnostics getDefault() {
+        return defaultDiagnostics;
+    }
+
+    public static void setDefault(Diagnostics diagnostics) {
+        defaultDiagnostics = diagnostics;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    // Call sites guard on these before building a message, so disabled levels cost a field compare
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel != Level.OFF && messageLevel.ordinal() <= level.ordinal();
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public boolean isTraceEnabled() {
+        return isEnabled(Level.TRACE);
+    }
+
+    public void log(Level messageLevel, String message) {
+        if (isEnabled(messageLevel)) {
+            sink.log(messageLevel, message);
+        }
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    public void trace(String message) {
+        log(Level.TRACE, message);
+    }
+
+    private static Level levelFromProperty() {
+        String value = System.getProperty("transpiler.log");
+        if (value == null || value.isBlank()) {
+            return Level.OFF;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠️ Unknown transpiler.log level '" + value + "', logging disabled");
+            return Level.OFF;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Re-transpiles a script that is being edited by splitting it into top-level statements ("chunks")
+// and only lexing and parsing chunks whose text changed since the previous call.
+// Not thread-safe: CompilerUI drives it from a single background thread.
+public class IncrementalTranspiler {
+    private Map<String, Chunk> chunks = new HashMap<>();   // chunks of the previous call, by key
+    private int reused;
+    private int converted;
+
+    public String transpile(String source) {
+        Map<String, Chunk> current = new HashMap<>();
+        Set<String> imports = new TreeSet<>();
+        Set<String> functions = new LinkedHashSet<>();
+        List<String> statements = new ArrayList<>();
+        reused = 0;
+        converted = 0;
+
+        for (String text : split(source)) {
+            // A chunk's output also depends on the functions defined before it (calls vs. commands)
+            String key = functions.isEmpty() ? text : String.join(",", functions) + "\u0000" + text;
+            Chunk chunk = chunks.get(key);
+            if (chunk == null) {
+                chunk = Chunk.convert(text, functions);
+                converted++;
+            } else {
+                reused++;
+            }
+            current.put(key, chunk);
+
+            imports.addAll(chunk.imports);
+            functions.addAll(chunk.functions);
+            statements.addAll(chunk.statements);
+        }
+        chunks = current;
+
+        StringBuilder python = new StringBuilder(CodeGenerator.generateImports(imports));
+        if (python.length() > 0) {
+            python.append("\n");
+        }
+        for (String statement : statements) {
+            python.append(statement).append("\n");
+        }
+        return python.toString();
+    }
+
+    // Chunks reused from the previous call / converted in the last call
+    public int getReused() {
+        return reused;
+    }
+
+    public int getConverted() {
+        return converted;
+    }
+
+    // Splits at top-level statement boundaries, using offset-only tokens so the scan stays cheap
+    static List<String> split(String source) {
+        List<String> texts = new ArrayList<>();
+        TokenBuffer tokens;
+        try {
+            tokens = new Lexer(source, Diagnostics.OFF).tokenizeCompact();
+        } catch (RuntimeException e) {
+            texts.add(source);
+            return texts;
+        }
+
+        // Each chunk runs from the start of its first line to just past its terminating newline
+        for (StatementSplitter.Range range : StatementSplitter.split(tokens)) {
+            int start = range.from > 0 ? tokens.start(range.from - 1) + 1 : 0;
+            int end = tokens.type(range.to - 1) == TokenType.NEWLINE ? tokens.start(range.to - 1) + 1 : source.length();
+            texts.add(source.substring(start, end));
+        }
+        return texts;
+    }
+
+    private static class Chunk {
+        final Set<String> imports;
+        final Set<String> functions;
+        final List<String> statements;
+
+        Chunk(Set<String> imports, Set<String> functions, List<String> statements) {
+            this.imports = imports;
+            this.functions = functions;
+            this.statements = statements;
+        }
+
+        static Chunk convert(String text, Set<String> knownFunctions) {
+            List<String> statements = new ArrayList<>();
+            try {
+                Parser parser = new Parser(new Lexer(text, Diagnostics.OFF).tokenize(), Diagnostics.OFF);
+                parser.declareFunctions(knownFunctions);
+                Node program = parser.parseProgram();
+                for (Node statement : program.children) {
+                    statements.add(CodeGenerator.generatePythonCode(statement));
+                }
+
+                Set<String> functions = new LinkedHashSet<>(parser.getFunctionNames());
+                functions.removeAll(knownFunctions);
+                return new Chunk(CodeGenerator.imports(program), functions, statements);
+            } catch (RuntimeException | StackOverflowError e) {
+                // Half-typed statements are normal while editing; mark them and keep the rest of the output
+                String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                statements.add("# ❌ " + message.replace("\n", " ") + ": " + text.strip().replace("\n", " ⏎ "));
+                return new Chunk(Set.of(), Set.of(), statements);
+            }
+        }
+    }
+}
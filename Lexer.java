@@ -1,16 +1,42 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-
-public class Lexer {
-    private String input;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+public class Lexer implements Iterable<Token> {
+    private static final int WINDOW_SIZE = 8192;
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // In-memory source (String, memory-mapped CharBuffer, ...); null when streaming from a Reader
+    private CharSequence input;
+
+    // Streaming source: a sliding window of characters pulled from the reader on demand
+    private Reader reader;
+    private char[] window;
+    private int windowStart;   // absolute position of window[0]
+    private int windowEnd;     // absolute position just past the last buffered char
+    private boolean readerExhausted;
+    private int mark;          // characters before this position may be discarded from the window
+
+    private final Diagnostics diagnostics;
     private int position;
-    private List<Token> tokens;
-    private int currentTokenIndex = 0;
+    private final ArrayDeque<Token> tokens = new ArrayDeque<>();  // tokens scanned but not yet handed out
+    private TokenBuffer compact;   // when set, tokens are recorded as offsets instead of Token objects
+    private TokenBuffer spare;     // the last compact buffer, kept across reset() so its arrays are reused
+    private boolean finished;
+    private int arithmeticDepth;   // parentheses open inside $(( )), 0 outside arithmetic
+    private int variableEnd = -1;  // just past the last $name, where * and ? are not a glob ($*, $?)
 
     private static final List<String> KEYWORDS = Arrays.asList(
             "if", "then", "else", "fi", "for", "while", "do", "done", "echo",
-            "case", "esac", "in", "function", "break", "continue"
+            "case", "esac", "in", "function", "break", "continue", "elif"
     );
 
     private static final List<String> OPERATORS = Arrays.asList(
@@ -21,160 +47,351 @@ public class Lexer {
             "-eq", "-ne", "-lt", "-gt", "-le", "-ge"
     );
 
-    public Lexer(String input) {
+    // Precomputed tries; matching walks the input in place and yields the shared constant for the match
+    private static final Trie KEYWORD_TRIE = Trie.of(KEYWORDS);
+    private static final Trie OPERATOR_TRIE = Trie.of(OPERATORS, COMPARISON_OPERATORS);
+
+    public Lexer(CharSequence input) {
+        this(input, Diagnostics.getDefault());
+    }
+
+    public Lexer(CharSequence input, Diagnostics diagnostics) {
         this.input = input;
+        this.diagnostics = diagnostics;
+        this.position = 0;
+    }
+
+    // ✅ Streaming mode: characters are pulled incrementally, so heap use is bounded by the longest token
+    public Lexer(Reader reader) {
+        this(reader, Diagnostics.getDefault());
+    }
+
+    public Lexer(Reader reader, Diagnostics diagnostics) {
+        this.reader = reader;
+        this.diagnostics = diagnostics;
+        this.window = new char[WINDOW_SIZE];
         this.position = 0;
-        this.tokens = new ArrayList<>();
+    }
+
+    // ✅ Reusable instance: reset() points it at a new source before each use
+    public Lexer(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        this.finished = true;
+    }
+
+    // Starts over on a new source, keeping the token queue, compact buffer and read window allocated.
+    // A TokenBuffer returned by an earlier tokenizeCompact() is emptied, so finish with it first.
+    public Lexer reset(CharSequence input) {
+        clear();
+        this.input = input;
+        this.reader = null;
+        return this;
+    }
+
+    public Lexer reset(Reader reader) {
+        clear();
+        this.input = null;
+        this.reader = reader;
+        if (window == null) {
+            window = new char[WINDOW_SIZE];
+        }
+        return this;
+    }
+
+    private void clear() {
+        position = 0;
+        tokens.clear();
+        compact = null;
+        if (spare != null) {
+            spare.reset("");  // drops the old source
+        }
+        finished = false;
+        windowStart = 0;
+        windowEnd = 0;
+        readerExhausted = false;
+        mark = 0;
+        arithmeticDepth = 0;
+        variableEnd = -1;
     }
 
     public List<Token> tokenize() {
-        System.out.println("🔹 Starting tokenization...");
+        List<Token> result = new ArrayList<>();
+        tokenize(result);
+        return result;
+    }
+
+    // Appends every token up to and including EOF, so callers can reuse one list across sources
+    public void tokenize(List<Token> result) {
+        diagnostics.debug("🔹 Starting tokenization...");
+        Metrics.Span span = Metrics.start();
+
+        Token token;
+        do {
+            token = nextToken();
+            result.add(token);
+        } while (token.getType() != TokenType.EOF);
+
+        Metrics.stop(span, Metrics.LEX);
+        diagnostics.debug("✅ Tokenization complete!");
+    }
+
+    // ✅ Compact mode: offset/length tokens over the in-memory source, no per-token objects or substrings
+    public TokenBuffer tokenizeCompact() {
+        if (input == null) {
+            throw new IllegalStateException("Compact tokens need an in-memory source; a streamed Reader does not keep its text");
+        }
+        diagnostics.debug("🔹 Starting compact tokenization...");
+        Metrics.Span span = Metrics.start();
+
+        startCompact();
+        while (!finished) {
+            scanToken();
+        }
+        Metrics.stop(span, Metrics.LEX);
+
+        diagnostics.debug("✅ Tokenization complete!");
+        return compact;
+    }
+
+    // ✅ On-demand compact mode: returns an empty buffer that scanCompact() fills as a streaming parser needs tokens
+    public TokenBuffer startCompact() {
+        if (input == null) {
+            throw new IllegalStateException("Compact tokens need an in-memory source; a streamed Reader does not keep its text");
+        }
+        compact = spare != null ? spare.reset(input) : new TokenBuffer(input);
+        spare = compact;
+        return compact;
+    }
 
-        while (position < input.length()) {
+    // Scans at least one more token into the compact buffer; false once EOF has been added
+    public boolean scanCompact() {
+        if (finished) {
+            return false;
+        }
+        scanToken();
+        return true;
+    }
+
+    public Token nextToken() {
+        if (tokens.isEmpty()) {
+            scanToken();
+        }
+        return tokens.poll();
+    }
+
+    public Token peekToken() {
+        if (tokens.isEmpty()) {
+            scanToken();
+        }
+        return tokens.peek();
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<Token>() {
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                return !done;
+            }
+
+            @Override
+            public Token next() {
+                if (done) {
+                    throw new NoSuchElementException();
+                }
+                Token token = nextToken();
+                done = token.getType() == TokenType.EOF;
+                return token;
+            }
+        };
+    }
+
+    // Scans input until at least one token is queued; queues EOF once the input is exhausted
+    private void scanToken() {
+        while (hasChar(position)) {
             skipWhitespace();
-            if (position >= input.length()) break;
+            if (!hasChar(position)) break;
 
-            char currentChar = input.charAt(position);
-            System.out.println("➡️ Processing: '" + currentChar + "' at position " + position);
+            mark = position;
+            char currentChar = charAt(position);
+            if (diagnostics.isTraceEnabled()) {
+                diagnostics.trace("➡️ Processing: '" + currentChar + "' at position " + position);
+            }
 
             if (currentChar == '#') {
                 skipComment();
                 continue;
             }
 
-            if (peekString(2).equals("..")) {
-                tokens.add(new Token(TokenType.RANGE_OPERATOR, ".."));
+            // Newlines end statements; a backslash before one continues the line
+            if (currentChar == '\n') {
+                emit(TokenType.NEWLINE, "\n", position, position + 1);
+                position++;
+                return;
+            }
+            if (currentChar == '\\' && peek() == '\n') {
                 position += 2;
                 continue;
             }
 
+            // Inside $(( )) arithmetic operators are tokens; elsewhere these characters are part of words
+            if (arithmeticDepth > 0 && "+-*/%^~?:".indexOf(currentChar) >= 0) {
+                int length = currentChar == '*' && peek() == '*' ? 2 : 1;
+                emit(TokenType.OPERATOR, null, position, position + length);
+                position += length;
+                return;
+            }
+
+            // Words with * or ? are globs, kept whole: *.txt, /var/log/*.gz, ./data/??.csv
+            if ((currentChar == '*' || currentChar == '?' || currentChar == '/' || currentChar == '.' && peek() != '.')
+                    && arithmeticDepth == 0 && position != variableEnd) {
+                int end = globEnd(position);
+                if (end > 0) {
+                    emit(TokenType.GLOB, null, position, end);
+                    position = end;
+                    return;
+                }
+            }
+
+            if (currentChar == '.' && peek() == '.') {
+                emit(TokenType.RANGE_OPERATOR, "..", position, position + 2);
+                position += 2;
+                return;
+            }
+
 
             if (currentChar == '=') {
                 if (peek() == '=') {
-                    tokens.add(new Token(TokenType.OPERATOR, "=="));
+                    emit(TokenType.OPERATOR, "==", position, position + 2);
                     position += 2;
                 } else {
-                    tokens.add(new Token(TokenType.ASSIGNMENT, "="));
+                    emit(TokenType.ASSIGNMENT, "=", position, position + 1);
                     position++;
                 }
-                continue;
+                return;
             }
             if (currentChar == '{') {
-                tokens.add(new Token(TokenType.CURLY_OPEN, "{"));
+                emit(TokenType.CURLY_OPEN, "{", position, position + 1);
                 position++;
-                continue;
+                return;
             }
             
             if (currentChar == '}') {
-                tokens.add(new Token(TokenType.CURLY_CLOSE, "}"));
+                emit(TokenType.CURLY_CLOSE, "}", position, position + 1);
                 position++;
-                continue;
+                return;
             }
             
             if (currentChar == '*') {
-                tokens.add(new Token(TokenType.STAR, "*"));
+                emit(TokenType.STAR, "*", position, position + 1);
                 position++;
-                continue;
+                return;
             }
             
             if (currentChar == ',') {
-                tokens.add(new Token(TokenType.COMMA, ","));
+                emit(TokenType.COMMA, ",", position, position + 1);
                 position++;
-                continue;
+                return;
             }
             
 
             if (currentChar == '[') {
-                tokens.add(new Token(TokenType.LEFT_BRACKET, "["));
+                emit(TokenType.LEFT_BRACKET, "[", position, position + 1);
                 position++;
-                continue;
+                return;
             }
             if (currentChar == ']') {
-                tokens.add(new Token(TokenType.RIGHT_BRACKET, "]"));
+                emit(TokenType.RIGHT_BRACKET, "]", position, position + 1);
                 position++;
-                continue;
+                return;
             }
             
 
             if (Character.isDigit(currentChar)) {
-                tokens.add(parseNumber());
-                continue;
+                parseNumber();
+                return;
             }
 
-            if (isComparisonOperator(peekString(3))) {
-                tokens.add(new Token(TokenType.OPERATOR, peekString(3)));
-                position += 3;
-                continue;
-            }
-
-            if (isOperator(peekString(3))) {
-                tokens.add(new Token(TokenType.OPERATOR, peekString(3)));
-                position += 3;
-                continue;
-            } else if (isOperator(peekString(2))) {
-                tokens.add(new Token(TokenType.OPERATOR, peekString(2)));
-                position += 2;
-                continue;
-            } else if (isOperator(String.valueOf(currentChar))) {
-                tokens.add(new Token(TokenType.OPERATOR, String.valueOf(currentChar)));
-                position++;
-                continue;
+            // Longest match over operators and comparison operators (-eq, -le, ...)
+            String operator = longestMatch(OPERATOR_TRIE, position);
+            if (operator != null && (operator.charAt(0) != '-' || !isWordChar(position + operator.length()))) {
+                emit(TokenType.OPERATOR, operator, position, position + operator.length());
+                position += operator.length();
+                return;
             }
 
             if (currentChar == '$') {
-                tokens.add(parseVariable());
-                continue;
+                if (peek() == '(' && hasChar(position + 2) && charAt(position + 2) == '(') {
+                    emit(TokenType.VARIABLE, "$", position, position + 1);
+                    emit(TokenType.LEFT_PAREN, "(", position + 1, position + 2);
+                    emit(TokenType.LEFT_PAREN, "(", position + 2, position + 3);
+                    position += 3;
+                    arithmeticDepth = 2;
+                    return;
+                }
+                parseVariable();
+                return;
             }
 
-            if (Character.isLetter(currentChar)) {
-                tokens.add(parseIdentifierOrKeyword());
-                continue;
+            // Words and option words such as -la or --force
+            if (Character.isLetter(currentChar) || (currentChar == '-' && (Character.isLetter(peek()) || peek() == '-'))) {
+                parseIdentifierOrKeyword();
+                return;
             }
 
             if (currentChar == '"' || currentChar == '\'') {
-                tokens.add(parseString());
-                continue;
+                parseString();
+                return;
             }
 
             if (currentChar == ';') {
-                tokens.add(new Token(TokenType.SEPARATOR, ";"));
+                emit(TokenType.SEPARATOR, ";", position, position + 1);
                 position++;
-                continue;
+                return;
             }
 
             if (currentChar == '(') {
-                tokens.add(new Token(TokenType.LEFT_PAREN, "("));
+                if (arithmeticDepth > 0) {
+                    arithmeticDepth++;
+                }
+                emit(TokenType.LEFT_PAREN, "(", position, position + 1);
                 position++;
-                continue;
+                return;
             }
             if (currentChar == ')') {
-                tokens.add(new Token(TokenType.RIGHT_PAREN, ")"));
+                if (arithmeticDepth > 0) {
+                    arithmeticDepth--;
+                }
+                emit(TokenType.RIGHT_PAREN, ")", position, position + 1);
                 position++;
-                continue;
+                return;
             }
             
 
-            System.out.println("⚠️ Skipping unknown character: " + currentChar);
+            if (diagnostics.isEnabled(Diagnostics.Level.WARN)) {
+                diagnostics.warn("⚠️ Skipping unknown character: " + currentChar);
+            }
             position++;
         }
 
-        tokens.add(new Token(TokenType.EOF, ""));
-        System.out.println("✅ Tokenization complete!");
-        return tokens;
-    }
-
-    public Token nextToken() {
-        return currentTokenIndex < tokens.size() ? tokens.get(currentTokenIndex++) : new Token(TokenType.EOF, "");
+        emit(TokenType.EOF, "", position, position);
+        finished = true;
     }
 
-    public Token peekToken() {
-        return currentTokenIndex < tokens.size() ? tokens.get(currentTokenIndex) : new Token(TokenType.EOF, "");
+    // Queues a token spanning [start, end); constant is the token text when it is a fixed symbol or keyword
+    private void emit(TokenType type, String constant, int start, int end) {
+        if (compact != null) {
+            compact.add(type, start, end - start);
+        } else {
+            tokens.add(new Token(type, constant != null ? constant : text(start, end)));
+        }
     }
 
     public TokenType getTokenType(String token) {
         if (isKeyword(token)) return TokenType.KEYWORD;
         if (isOperator(token)) return TokenType.OPERATOR;
-        if (isComparisonOperator(token)) return TokenType.OPERATOR;
         if (isVariable(token)) return TokenType.VARIABLE;
         if (isNumber(token)) return TokenType.NUMBER;
         if (isString(token)) return TokenType.STRING;
@@ -182,17 +399,18 @@ public class Lexer {
     }
 
     public Token handleStringLiterals(String input) {
-        return parseString();
+        parseString();
+        return tokens.pollLast();
     }
 
     public void handleSpecialChars(String input) {
         for (char c : input.toCharArray()) {
             if (c == '$') {
-                tokens.add(parseVariable());
+                parseVariable();
             } else if (c == '#') {
                 skipComment();
             } else if (c == '&') {
-                tokens.add(new Token(TokenType.OPERATOR, "&"));
+                emit(TokenType.OPERATOR, "&", position, position + 1);
             }
         }
     }
@@ -202,101 +420,179 @@ public class Lexer {
     }
 
     public String extractCommand(String input) {
-        return input.split("\\s+")[0];
+        return WHITESPACE.split(input)[0];
     }
 
     private void skipWhitespace() {
-        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+        while (hasChar(position) && Character.isWhitespace(charAt(position)) && charAt(position) != '\n') {
             position++;
+            mark = position;
         }
     }
 
+    // Stops at the newline so it still ends the statement
     private void skipComment() {
-        while (position < input.length() && input.charAt(position) != '\n') {
+        while (hasChar(position) && charAt(position) != '\n') {
             position++;
+            mark = position;
         }
-        position++;
     }
 
-    private Token parseNumber() {
+    private void parseNumber() {
         int start = position;
         
         // Read digits
-        while (position < input.length() && Character.isDigit(input.charAt(position))) {
+        while (hasChar(position) && Character.isDigit(charAt(position))) {
             position++;
         }
     
         // Check for `..` range operator
-        if (position + 1 < input.length() && input.charAt(position) == '.' && input.charAt(position + 1) == '.') {
+        if (hasChar(position + 1) && charAt(position) == '.' && charAt(position + 1) == '.') {
             // Create NUMBER token for the first part
-            String num = input.substring(start, position);
-            tokens.add(new Token(TokenType.NUMBER, num));
+            emit(TokenType.NUMBER, null, start, position);
     
             // Add RANGE_OPERATOR token
-            tokens.add(new Token(TokenType.RANGE_OPERATOR, ".."));
+            emit(TokenType.RANGE_OPERATOR, "..", position, position + 2);
             position += 2;  // Skip both dots
     
             // Parse second number
-            return parseNumber();
+            parseNumber();
+            return;
         }
     
-        return new Token(TokenType.NUMBER, input.substring(start, position));
+        emit(TokenType.NUMBER, null, start, position);
     }
     
-    private Token parseVariable() {
+    private void parseVariable() {
         int start = position++;
-        while (position < input.length() && (Character.isLetterOrDigit(input.charAt(position)) || input.charAt(position) == '_')) {
+        while (hasChar(position) && (Character.isLetterOrDigit(charAt(position)) || charAt(position) == '_')) {
             position++;
         }
-        return new Token(TokenType.VARIABLE, input.substring(start, position));
+        emit(TokenType.VARIABLE, null, start, position);
+        variableEnd = position;
     }
 
-    private Token parseIdentifierOrKeyword() {
+    private void parseIdentifierOrKeyword() {
         int start = position;
-        while (position < input.length() &&
-                (Character.isLetterOrDigit(input.charAt(position))
-                || input.charAt(position) == '_' 
-                || input.charAt(position) == '.' 
-                || input.charAt(position) == '-')) {
+        // In arithmetic i-1 is i minus 1
+        while (hasChar(position) &&
+                (Character.isLetterOrDigit(charAt(position))
+                || charAt(position) == '_' 
+                || (arithmeticDepth == 0 && (charAt(position) == '.' || charAt(position) == '-')))) {
             position++;
         }
-        String word = input.substring(start, position);
-        return isKeyword(word) ? new Token(TokenType.KEYWORD, word) : new Token(TokenType.IDENTIFIER, word);
+        if (arithmeticDepth == 0 && hasChar(position) && "*?/[".indexOf(charAt(position)) >= 0) {
+            int end = globEnd(start);
+            if (end > 0) {
+                emit(TokenType.GLOB, null, start, end);
+                position = end;
+                return;
+            }
+        }
+        String keyword = exactMatch(KEYWORD_TRIE, start, position);
+        emit(keyword != null ? TokenType.KEYWORD : TokenType.IDENTIFIER, keyword, start, position);
     }
 
-    private Token parseString() {
-        char quoteType = input.charAt(position);
+    // End of the word at start if it has a * or ?, otherwise -1
+    private int globEnd(int start) {
+        int end = start;
+        boolean glob = false;
+        while (hasChar(end) && (Character.isLetterOrDigit(charAt(end)) || "_.-/*?[]".indexOf(charAt(end)) >= 0)) {
+            glob |= charAt(end) == '*' || charAt(end) == '?';
+            end++;
+        }
+        return glob ? end : -1;
+    }
+
+    private void parseString() {
+        char quoteType = charAt(position);
         int start = ++position;
-        while (position < input.length() && input.charAt(position) != quoteType) {
-            if (input.charAt(position) == '\\' && position + 1 < input.length()) {
+        while (hasChar(position) && charAt(position) != quoteType) {
+            if (charAt(position) == '\\' && hasChar(position + 1)) {
                 position += 2;
             } else {
                 position++;
             }
         }
-        String strValue = input.substring(start, position);
+        emit(TokenType.STRING, null, start, position);
         position++; // Skip closing quote
-        return new Token(TokenType.STRING, strValue);
+    }
+
+    private boolean isWordChar(int pos) {
+        return hasChar(pos) && (Character.isLetterOrDigit(charAt(pos)) || charAt(pos) == '_' || charAt(pos) == '-');
     }
 
     private char peek() {
-        return (position + 1 < input.length()) ? input.charAt(position + 1) : '\0';
+        return (hasChar(position + 1)) ? charAt(position + 1) : '\0';
     }
 
-    private String peekString(int len) {
-        return input.substring(position, Math.min(position + len, input.length()));
+    private String longestMatch(Trie trie, int start) {
+        String match = null;
+        Trie node = trie;
+        for (int pos = start; node != null && hasChar(pos); pos++) {
+            node = node.next(charAt(pos));
+            if (node != null && node.value != null) {
+                match = node.value;
+            }
+        }
+        return match;
     }
 
-    private boolean isKeyword(String word) {
-        return KEYWORDS.contains(word);
+    private String exactMatch(Trie trie, int start, int end) {
+        Trie node = trie;
+        for (int pos = start; node != null && pos < end; pos++) {
+            node = node.next(charAt(pos));
+        }
+        return node != null ? node.value : null;
     }
 
-    private boolean isOperator(String symbol) {
-        return OPERATORS.contains(symbol);
+    private boolean hasChar(int pos) {
+        if (input != null) {
+            return pos < input.length();
+        }
+        return pos < windowEnd || fill(pos);
+    }
+
+    private char charAt(int pos) {
+        return input != null ? input.charAt(pos) : window[pos - windowStart];
     }
 
-    private boolean isComparisonOperator(String symbol) {
-        return COMPARISON_OPERATORS.contains(symbol);
+    private String text(int start, int end) {
+        return input != null ? input.subSequence(start, end).toString() : new String(window, start - windowStart, end - start);
+    }
+
+    // Reads from the reader until pos is buffered, sliding the window past characters before the mark
+    private boolean fill(int pos) {
+        try {
+            while (pos >= windowEnd && !readerExhausted) {
+                int keep = windowEnd - mark;
+                if (mark > windowStart) {
+                    System.arraycopy(window, mark - windowStart, window, 0, keep);
+                    windowStart = mark;
+                }
+                if (keep == window.length) {
+                    window = Arrays.copyOf(window, window.length * 2); // a single token longer than the window
+                }
+                int read = reader.read(window, keep, window.length - keep);
+                if (read < 0) {
+                    readerExhausted = true;
+                } else {
+                    windowEnd += read;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return pos < windowEnd;
+    }
+
+    private boolean isKeyword(String word) {
+        return KEYWORD_TRIE.contains(word);
+    }
+
+    // Covers both shell operators and comparison operators
+    private boolean isOperator(String symbol) {
+        return OPERATOR_TRIE.contains(symbol);
     }
 
     private boolean isVariable(String word) {
@@ -304,7 +600,7 @@ public class Lexer {
     }
 
     private boolean isNumber(String input) {
-        return input.matches("-?\\d+(\\.\\d+)?");
+        return NUMBER.matcher(input).matches();
     }
 
     private boolean isString(String input) {
@@ -314,4 +610,41 @@ public class Lexer {
     private boolean isComment(String line) {
         return line.trim().startsWith("#");
     }
-}
\ No newline at end of file
+
+    // ASCII trie over a fixed word list; terminal nodes hold the word itself so matches never allocate
+    private static final class Trie {
+        private final Trie[] children = new Trie[128];
+        private String value;
+
+        @SafeVarargs
+        static Trie of(List<String>... wordLists) {
+            Trie root = new Trie();
+            for (List<String> words : wordLists) {
+                for (String word : words) {
+                    Trie node = root;
+                    for (int i = 0; i < word.length(); i++) {
+                        char c = word.charAt(i);
+                        if (node.children[c] == null) {
+                            node.children[c] = new Trie();
+                        }
+                        node = node.children[c];
+                    }
+                    node.value = word;
+                }
+            }
+            return root;
+        }
+
+        Trie next(char c) {
+            return c < 128 ? children[c] : null;
+        }
+
+        boolean contains(String word) {
+            Trie node = this;
+            for (int i = 0; i < word.length() && node != null; i++) {
+                node = node.next(word.charAt(i));
+            }
+            return node != null && node.value != null;
+        }
+    }
+}
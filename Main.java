@@ -1,37 +1,85 @@
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.Arrays;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 
 public class Main {
     public static void main(String[] args) {
-        try {
-            System.out.println("📂 Reading input file...");
-            String input = new String(Files.readAllBytes(Paths.get("bash.sh")), StandardCharsets.UTF_8);
-            System.out.println("✅ File read successfully!\n");
+        // ✅ Batch mode: convert whole script trees in one JVM
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchTranspiler.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // ✅ Daemon mode: a warmed-up resident transpiler behind a local socket, and its client
+        if (args.length > 0 && args[0].equals("--serve")) {
+            TranspilerServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--client")) {
+            TranspilerServer.Client.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
-            // ✅ Tokenization Step
-            System.out.println("🔍 Tokenizing input...");
-            Lexer lexer = new Lexer(input);
-            List<Token> tokens = lexer.tokenize();
-            System.out.println("✅ Tokenization complete!");
+        // ✅ Pre-parsed scripts: save bash.sh's syntax tree, or generate output.py from a saved one without lexing
+        if (args.length == 2 && args[0].equals("--save-ast")) {
+            try (OutputStream out = Files.newOutputStream(Paths.get(args[1]))) {
+                BinaryFormat.writeTree(new Transpiler().parse(MappedSource.open(Paths.get("bash.sh"))), out);
+                System.out.println("✅ Syntax tree saved to " + args[1]);
+            } catch (IOException e) {
+                System.err.println("❌ Error reading or writing files: " + e.getMessage());
+            } catch (Exception e) {
+                System.err.println("❌ Unexpected error: " + e.getMessage());
+            }
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--load-ast")) {
+            try (InputStream in = Files.newInputStream(Paths.get(args[1]));
+                 Writer writer = Files.newBufferedWriter(Paths.get("output.py"), StandardCharsets.UTF_8)) {
+                new Transpiler().generate(BinaryFormat.readTree(in), writer);
+                System.out.println("✅ Conversion successful! Check output.py");
+            } catch (IOException e) {
+                System.err.println("❌ Error reading or writing files: " + e.getMessage());
+            } catch (RuntimeException e) {
+                // The file decoded, but not into a tree this version can generate from
+                System.err.println("❌ " + args[1] + " does not hold a valid syntax tree: " + e);
+            }
+            return;
+        }
 
-            // ✅ Print tokens for debugging
-            System.out.println("\n🔹 **TOKENS FOUND:**");
-            for (Token token : tokens) {
-                System.out.println(token);
+        // ✅ Streaming mode: statements reach output.py as they are translated, so memory stays flat
+        if (args.length > 0 && args[0].equals("--stream")) {
+            try (Writer writer = Files.newBufferedWriter(Paths.get("output.py"), StandardCharsets.UTF_8)) {
+                System.out.println("🔍 Streaming bash.sh to output.py...");
+                new Transpiler().transpileStreaming(Paths.get("bash.sh"), writer);
+                System.out.println("\n✅ Conversion successful! Check output.py");
+            } catch (IOException e) {
+                System.err.println("❌ Error reading or writing files: " + e.getMessage());
+            } catch (Exception e) {
+                System.err.println("❌ Conversion stopped, output.py holds the statements before the error: " + e.getMessage());
             }
+            return;
+        }
 
-            // ✅ Parsing Step
-            System.out.println("\n🔍 Parsing tokens...");
-            Parser parser = new Parser(tokens);
-            List<String> pythonCode = parser.parse();
-            System.out.println("✅ Parsing complete!");
+        // ✅ Default mode: bash.sh → output.py; the script is memory-mapped and lexed in place.
+        // --parallel parses its top-level statements on all cores.
+        boolean parallel = args.length > 0 && args[0].equals("--parallel");
+        try {
+            System.out.println("🔍 Converting bash.sh...");
+            StringBuilder pythonCode = new StringBuilder();
+            if (parallel) {
+                new Transpiler().transpileParallel(MappedSource.open(Paths.get("bash.sh")), pythonCode);
+            } else {
+                new Transpiler().transpile(Paths.get("bash.sh"), pythonCode);
+            }
 
-            // ✅ Writing Output
+            // Written only after a successful conversion, so a syntax error leaves the old output.py alone
             System.out.println("\n💾 Writing to output.py...");
-            Files.write(Paths.get("output.py"), pythonCode, StandardCharsets.UTF_8);
+            Files.write(Paths.get("output.py"), pythonCode.toString().getBytes(StandardCharsets.UTF_8));
             System.out.println("\n✅ Conversion successful! Check output.py");
 
         } catch (IOException e) {
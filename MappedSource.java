@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Memory-mapped script as a CharSequence the Lexer reads in place, without decoding the file first.
+// Bash syntax is ASCII, so each byte is one char: ASCII bytes are themselves and every other byte reads
+// as a letter, which keeps multi-byte UTF-8 sequences inside the word, string or comment they belong to.
+// Offsets are byte offsets; toString() decodes UTF-8, so token values come out exactly as in the file.
+public class MappedSource implements CharSequence {
+    // A mapping is indexed by int; larger scripts go through the streaming Reader path instead
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+    private static final char NON_ASCII = 'À';
+
+    private final ByteBuffer bytes;
+
+    private MappedSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    public static MappedSource open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_SIZE) {
+                throw new IOException(path + " is " + size + " bytes; only files up to " + MAX_SIZE + " bytes can be mapped");
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    // Absolute reads never touch the buffer's position, so one source can be read from any thread
+    @Override
+    public char charAt(int index) {
+        byte b = bytes.get(index);
+        return b >= 0 ? (char) b : NON_ASCII;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+        }
+        return new MappedSource(bytes.slice(start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        byte[] utf8 = new byte[length()];
+        bytes.get(0, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,322 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Pipeline instrumentation: per-phase counts, latency histograms and allocated bytes, published through JMX
+// (transpiler:type=Metrics) and as JSON. Off unless -Dtranspiler.metrics=true or setEnabled(true); when off,
+// start() returns null and every call site skips its measurements.
+//
+// Phases: lex, parse (whole script), parse.<construct> (every statement by node type, nested statements
+// included in their parent's time), generate, write (appending output) and convert (one script end to end,
+// in batch mode and the daemon).
+public final class Metrics {
+    public static final String OBJECT_NAME = "transpiler:type=Metrics";
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = THREADS.isThreadAllocatedMemorySupported();
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> CONSTRUCTS = new ConcurrentHashMap<>();  // node type → parse.<type>
+    private static final Map<String, LongAdder> THREAD_BYTES = new ConcurrentHashMap<>();
+
+    public static final Timer LEX = timer("lex");
+    public static final Timer PARSE = timer("parse");
+    public static final Timer GENERATE = timer("generate");
+    public static final Timer WRITE = timer("write");
+    public static final Timer CONVERT = timer("convert");
+
+    private static volatile boolean enabled;
+
+    static {
+        setEnabled(Boolean.getBoolean("transpiler.metrics"));
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        if (on && ALLOCATION_SUPPORTED) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+        enabled = on;
+    }
+
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    public static Timer construct(String nodeType) {
+        Timer timer = CONSTRUCTS.get(nodeType);
+        return timer != null ? timer : CONSTRUCTS.computeIfAbsent(nodeType, type -> timer("parse." + type));
+    }
+
+    // Null when metrics are off, so call sites cost one volatile read
+    public static Span start() {
+        return enabled ? new Span(System.nanoTime(), allocatedBytes()) : null;
+    }
+
+    public static void stop(Span span, Timer timer) {
+        if (span == null) {
+            return;
+        }
+        long bytes = allocatedBytes() - span.bytes;
+        timer.record(System.nanoTime() - span.nanos, bytes);
+        if (timer == CONVERT) {
+            THREAD_BYTES.computeIfAbsent(Thread.currentThread().getName(), name -> new LongAdder()).add(bytes);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATION_SUPPORTED ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    public static void reset() {
+        for (Timer timer : TIMERS.values()) {
+            timer.reset();
+        }
+        THREAD_BYTES.clear();
+    }
+
+    // Machine-readable summary: every phase with at least one sample, and allocated bytes per converting thread
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"phases\": {");
+        String separator = "\n";
+        for (Timer timer : new TreeMap<>(TIMERS).values()) {
+            if (timer.count() == 0) {
+                continue;
+            }
+            json.append(separator).append("    ").append(quote(timer.name)).append(": {");
+            String field = "";
+            for (Map.Entry<String, Long> value : timer.summary().entrySet()) {
+                json.append(field).append(quote(value.getKey())).append(": ").append(value.getValue());
+                field = ", ";
+            }
+            json.append("}");
+            separator = ",\n";
+        }
+        json.append("\n  },\n  \"threadAllocatedBytes\": {");
+        separator = "\n";
+        for (Map.Entry<String, LongAdder> thread : new TreeMap<>(THREAD_BYTES).entrySet()) {
+            json.append(separator).append("    ").append(quote(thread.getKey())).append(": ").append(thread.getValue().sum());
+            separator = ",\n";
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MBean(), name);
+            }
+        } catch (JMException e) {
+            System.err.println("⚠️ Could not register the metrics MBean: " + e.getMessage());
+        }
+    }
+
+    public static final class Span {
+        final long nanos;
+        final long bytes;
+
+        Span(long nanos, long bytes) {
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+
+    // Count, total time, allocated bytes and a log-linear latency histogram in the style of HdrHistogram:
+    // 16 sub-buckets per power of two, so any recorded value is reported within about 6%
+    public static final class Timer {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int MAX_EXPONENT = 40;   // about 18 minutes in nanoseconds; longer samples are clamped
+
+        final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray((MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS);
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos, long bytes) {
+            count.increment();
+            totalNanos.add(nanos);
+            allocatedBytes.add(bytes);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            buckets.incrementAndGet(bucket(nanos));
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) Math.max(0, value);
+            }
+            int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+            int sub = (int) (Math.min(value, (1L << (MAX_EXPONENT + 1)) - 1) >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        // Highest value that falls in the bucket
+        private static long highestValue(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift) - 1;
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long percentile(double percentile) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            long target = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= Math.max(1, target)) {
+                    return Math.min(highestValue(i), maxNanos.get());
+                }
+            }
+            return 0;
+        }
+
+        Map<String, Long> summary() {
+            long n = count();
+            Map<String, Long> summary = new LinkedHashMap<>();
+            summary.put("count", n);
+            summary.put("totalNanos", totalNanos.sum());
+            summary.put("meanNanos", n == 0 ? 0 : totalNanos.sum() / n);
+            summary.put("p50Nanos", percentile(50));
+            summary.put("p90Nanos", percentile(90));
+            summary.put("p99Nanos", percentile(99));
+            summary.put("p999Nanos", percentile(99.9));
+            summary.put("maxNanos", maxNanos.get());
+            summary.put("allocatedBytes", allocatedBytes.sum());
+            summary.put("allocatedBytesPerOp", n == 0 ? 0 : allocatedBytes.sum() / n);
+            return summary;
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            allocatedBytes.reset();
+            maxNanos.set(0);
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+        }
+    }
+
+    // Attributes are keyed by phase name, so JMX consoles show them as tables
+    public interface MetricsMXBean {
+        boolean isEnabled();
+
+        void setEnabled(boolean enabled);
+
+        Map<String, Long> getCounts();
+
+        Map<String, Long> getMeanNanos();
+
+        Map<String, Long> getP99Nanos();
+
+        Map<String, Long> getMaxNanos();
+
+        Map<String, Long> getAllocatedBytes();
+
+        Map<String, Long> getThreadAllocatedBytes();
+
+        String getSummaryJson();
+
+        void reset();
+    }
+
+    private static final class MBean implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean on) {
+            Metrics.setEnabled(on);
+        }
+
+        @Override
+        public Map<String, Long> getCounts() {
+            return column("count");
+        }
+
+        @Override
+        public Map<String, Long> getMeanNanos() {
+            return column("meanNanos");
+        }
+
+        @Override
+        public Map<String, Long> getP99Nanos() {
+            return column("p99Nanos");
+        }
+
+        @Override
+        public Map<String, Long> getMaxNanos() {
+            return column("maxNanos");
+        }
+
+        @Override
+        public Map<String, Long> getAllocatedBytes() {
+            return column("allocatedBytes");
+        }
+
+        @Override
+        public Map<String, Long> getThreadAllocatedBytes() {
+            Map<String, Long> bytes = new TreeMap<>();
+            THREAD_BYTES.forEach((thread, sum) -> bytes.put(thread, sum.sum()));
+            return bytes;
+        }
+
+        @Override
+        public String getSummaryJson() {
+            return toJson();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+
+        private static Map<String, Long> column(String key) {
+            Map<String, Long> values = new TreeMap<>();
+            for (Timer timer : TIMERS.values()) {
+                if (timer.count() > 0) {
+                    values.put(timer.name, timer.summary().get(key));
+                }
+            }
+            return values;
+        }
+    }
+}
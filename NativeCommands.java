@@ -0,0 +1,229 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Rewrites ls, cat, touch, rm and mkdir commands into "native_command" nodes that CodeGenerator emits as
+// plain Python file operations (os, shutil, pathlib), so the converted script doesn't start a shell for each.
+// Only commands in statement position are rewritten: in pipelines, redirections and $( ) their output or
+// exit status is used, so they stay shell commands. Anything this pass doesn't fully understand (unknown
+// options, globs, ~, command substitutions) is left for subprocess as before.
+//
+// A native_command keeps the command name in operator, its options as letters in text (e.g. "rf") and the
+// operands in value. Operands are the words the shell command would have received; a failing operation
+// prints the shell command's error and the script carries on.
+//
+// A for loop over $(seq ...) or $(cat file) iterates lazily instead of capturing the command's output: the
+// substitution becomes a "seq" (children: the arguments) or "file_words" node (value: the file). $(find ...)
+// stays a shell command, as os.walk can't list entries in the order find does.
+public class NativeCommands {
+    private static final Pattern SEQ_NUMBER = Pattern.compile("\\d{1,9}");
+
+    // Runs on each top-level statement as the parser returns it; rewrites nested blocks too
+    public static Node rewrite(Node statement) {
+        Node rewritten = rewriteCommand(statement);
+        Deque<Node> work = new ArrayDeque<>();
+        work.push(rewritten);
+        while (!work.isEmpty()) {
+            Node node = work.pop();
+            switch (node.type) {
+                case "block":
+                    List<Node> statements = node.children;
+                    for (int i = 0; i < statements.size(); i++) {
+                        statements.set(i, rewriteCommand(statements.get(i)));
+                        work.push(statements.get(i));
+                    }
+                    break;
+                case "if":
+                    work.push(node.body);
+                    if (node.elseBody != null) {
+                        work.push(node.elseBody);
+                    }
+                    break;
+                case "for":
+                    rewriteIterable(node.iterable);
+                    work.push(node.body);
+                    break;
+                case "while":
+                case "function_def":
+                    work.push(node.body);
+                    break;
+                case "case":
+                    for (Node arm : node.children) {
+                        work.push(arm.body);
+                    }
+                    break;
+                case "logical_op":
+                    // test && rm x becomes an if; a && b || c stays one shell line
+                    if ("command".equals(node.right.type) && !"logical_op".equals(node.left.type)) {
+                        node.right = rewriteCommand(node.right);
+                    }
+                    // Chains group to the left; compound commands in them have bodies to rewrite
+                    for (Node link = node; "logical_op".equals(link.type); link = link.left) {
+                        work.push(link.right);
+                        if (!"logical_op".equals(link.left.type)) {
+                            work.push(link.left);
+                        }
+                    }
+                    break;
+            }
+        }
+        return rewritten;
+    }
+
+    private static Node rewriteCommand(Node command) {
+        if (!"command".equals(command.type) || command.value.children.isEmpty()) {
+            return command;
+        }
+        List<Node> words = command.value.children;
+        Node name = words.get(0);
+        if (!"word".equals(name.type)) {
+            return command;
+        }
+
+        // Options first, as single-letter clusters (-rf); operands after
+        StringBuilder options = new StringBuilder();
+        int first = 1;
+        while (first < words.size() && isOption(words.get(first))) {
+            options.append(words.get(first).text, 1, words.get(first).text.length());
+            first++;
+        }
+        List<Node> operands = words.subList(first, words.size());
+        for (Node operand : operands) {
+            if (!isPlainOperand(operand)) {
+                return command;
+            }
+        }
+
+        boolean supported;
+        switch (name.text) {
+            case "ls":
+                // One directory or the current one; -a would add . and ..
+                supported = onlyOptions(options, "A") && operands.size() <= 1;
+                break;
+            case "cat":
+                supported = options.length() == 0 && !operands.isEmpty();  // no operands reads stdin
+                break;
+            case "touch":
+                supported = options.length() == 0 && !operands.isEmpty();
+                break;
+            case "rm":
+                supported = onlyOptions(options, "rRf") && !operands.isEmpty();
+                break;
+            case "mkdir":
+                supported = onlyOptions(options, "p") && !operands.isEmpty();
+                break;
+            default:
+                supported = false;
+                break;
+        }
+        if (!supported) {
+            return command;
+        }
+
+        Node rewritten = new Node("native_command");
+        rewritten.operator = name.text;
+        rewritten.text = normalize(options);
+        rewritten.value = new Node("words");
+        rewritten.value.children = new ArrayList<>(operands);
+        return rewritten;
+    }
+
+    private static void rewriteIterable(Node iterable) {
+        if (!"words".equals(iterable.type)) {
+            return;
+        }
+        List<Node> items = iterable.children;
+        for (int i = 0; i < items.size(); i++) {
+            Node item = items.get(i);
+            if ("subshell".equals(item.type) && "command".equals(item.command.type)) {
+                Node lazy = rewriteSubstitution(item.command.value.children);
+                if (lazy != null) {
+                    items.set(i, lazy);
+                }
+            }
+        }
+    }
+
+    private static Node rewriteSubstitution(List<Node> words) {
+        if (words.isEmpty() || !"word".equals(words.get(0).type)) {
+            return null;
+        }
+        List<Node> operands = words.subList(1, words.size());
+        switch (words.get(0).text) {
+            case "seq":
+                return rewriteSeq(operands);
+            case "cat":
+                if (operands.size() != 1 || !isPlainOperand(operands.get(0))) {
+                    return null;
+                }
+                Node file = new Node("file_words");
+                file.value = operands.get(0);
+                return file;
+            default:
+                return null;
+        }
+    }
+
+    // seq LAST, seq FIRST LAST or seq FIRST STEP LAST over integers; the step has to be a known non-zero number
+    private static Node rewriteSeq(List<Node> operands) {
+        if (operands.isEmpty() || operands.size() > 3) {
+            return null;
+        }
+        for (Node operand : operands) {
+            if (!"variable".equals(operand.type) && !isInteger(operand)) {
+                return null;
+            }
+        }
+        if (operands.size() == 3 && !(isInteger(operands.get(1)) && Integer.parseInt(operands.get(1).text) != 0)) {
+            return null;
+        }
+        Node seq = new Node("seq");
+        seq.children = new ArrayList<>(operands);
+        return seq;
+    }
+
+    private static boolean isInteger(Node operand) {
+        return "literal".equals(operand.type) && SEQ_NUMBER.matcher(operand.text).matches();
+    }
+
+    private static boolean isOption(Node word) {
+        return "word".equals(word.type) && word.text.length() > 1 && word.text.charAt(0) == '-'
+                && word.text.charAt(1) != '-';
+    }
+
+    private static boolean onlyOptions(CharSequence options, String allowed) {
+        for (int i = 0; i < options.length(); i++) {
+            if (allowed.indexOf(options.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Sorted and deduplicated, with -R spelled -r, so equal option sets compare equal
+    private static String normalize(CharSequence options) {
+        return options.chars()
+                .map(c -> c == 'R' ? 'r' : c)
+                .distinct()
+                .sorted()
+                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
+                .toString();
+    }
+
+    // A word the shell would pass through as one argument: no glob, tilde or other expansion but a quoted "$name".
+    // An unquoted $name is split into words and globbed, so it is left to the shell.
+    private static boolean isPlainOperand(Node word) {
+        switch (word.type) {
+            case "literal":
+                return true;
+            case "word":
+                return !word.text.startsWith("-") && !CodeGenerator.containsAny(word.text, "*?[]{}~");
+            case "string":
+                return !CodeGenerator.containsAny(word.text, "`\\") && !word.text.contains("$(");
+            default:
+                return false;
+        }
+    }
+}
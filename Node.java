@@ -4,13 +4,14 @@ public class Node {
     String type;
     String functionName;
     String file;
+    String text;              // Used in literals, strings and plain words; the Bash operator of a comparison
     List<String> parameters;  // Used in function definitions
     List<String> arguments;   // Used in function calls
-    Node value;               // Used for assignments and echo
+    List<Node> children;      // Used in programs, blocks, word lists, case arms and pipelines
+    Node value;               // Used for assignments, echo, commands and redirection targets
     Node content;             // Used in redirection (output to files)
-    Node command1;            // Used for pipelines
-    Node command2;            // Used for pipelines
     Node body;                // Used in functions and loops
+    Node elseBody;            // Used in if statements: an else block or a chained elif
     Node condition;           // Used in if and while loops
     Node iterable;            // Used in for loops
     String variable;          // Used in variable assignments and loops
@@ -23,4 +24,9 @@ public class Node {
     public Node(String type) {
         this.type = type;
     }
+
+    public Node(String type, String text) {
+        this.type = type;
+        this.text = text;
+    }
 }
@@ -1,928 +1,1188 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class Parser {
+    private static final Pattern LOOP_BOUND = Pattern.compile("-?\\d{1,9}");  // a literal loop bound that fits in an int
+
     private List<Token> tokens;
+    private TokenBuffer compact;   // Set instead of tokens when parsing a compact token stream
+    private Lexer lexer;           // Set when the compact stream is scanned on demand (streaming mode)
+    private Token compactToken;    // Last token materialized from the compact stream
+    private int compactTokenIndex = -1;
     private int currentTokenIndex = 0;
+    private int limit = Integer.MAX_VALUE;   // tokens at or past this index are treated as end of input
+    private final Diagnostics diagnostics;
+    private final Set<String> functionNames = new HashSet<>();  // Functions defined so far; calling one is not a subprocess
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();  // Open compound commands, innermost first
+    private final ConstantFolder folder = new ConstantFolder();
 
     public Parser(List<Token> tokens) {
+        this(tokens, Diagnostics.getDefault());
+    }
+
+    public Parser(List<Token> tokens, Diagnostics diagnostics) {
+        this.tokens = tokens;
+        this.diagnostics = diagnostics;
+    }
+
+    public Parser(TokenBuffer compact) {
+        this(compact, Diagnostics.getDefault());
+    }
+
+    public Parser(TokenBuffer compact, Diagnostics diagnostics) {
+        this.compact = compact;
+        this.diagnostics = diagnostics;
+    }
+
+    // ✅ Reusable instance: reset() hands it a token stream before each use
+    public Parser(Diagnostics diagnostics) {
+        this.tokens = new ArrayList<>();
+        this.diagnostics = diagnostics;
+    }
+
+    // Starts over on a new token stream; declared functions are forgotten, the function set is kept allocated
+    public Parser reset(List<Token> tokens) {
+        clear();
         this.tokens = tokens;
+        this.compact = null;
+        return this;
     }
 
+    public Parser reset(TokenBuffer compact) {
+        clear();
+        this.tokens = null;
+        this.compact = compact;
+        return this;
+    }
+
+    // Parses tokens [from, to) of a shared buffer, e.g. one top-level chunk of a script parsed in parallel.
+    // The buffer is only read, so any number of parsers can work on one buffer at once.
+    public Parser reset(TokenBuffer compact, int from, int to) {
+        reset(compact);
+        this.currentTokenIndex = from;
+        this.limit = to;
+        return this;
+    }
+
+    // Streaming: tokens are scanned only as far as the parser looks ahead, and parseNextStatement() discards
+    // the ones before each statement, so the token buffer never holds much more than one statement
+    public Parser reset(Lexer lexer) {
+        clear();
+        this.tokens = null;
+        this.compact = lexer.startCompact();
+        this.lexer = lexer;
+        return this;
+    }
+
+    private void clear() {
+        lexer = null;
+        currentTokenIndex = 0;
+        limit = Integer.MAX_VALUE;
+        compactToken = null;
+        compactTokenIndex = -1;
+        functionNames.clear();
+        frames.clear();
+    }
+
+    // ✅ Python code per top-level statement, with the imports it needs first
     public List<String> parse() {
+        Node program = parseProgram();
         List<String> pythonCode = new ArrayList<>();
 
-        while (currentTokenIndex < tokens.size()) {
-            Token token = tokens.get(currentTokenIndex);
-            if (token.getType() == TokenType.EOF) {
-                break;
-            }
-            pythonCode.add(parseStatement(0));
+        String imports = CodeGenerator.generateImports(program);
+        if (!imports.isEmpty()) {
+            pythonCode.add(imports);
+        }
+        for (Node statement : program.children) {
+            pythonCode.add(CodeGenerator.generatePythonCode(statement));
         }
-
         return pythonCode;
     }
 
-    private void advance() {
-        if (currentTokenIndex < tokens.size() - 1) {
-            currentTokenIndex++;
+    // Functions defined outside the tokens being parsed, e.g. earlier in the same script
+    public void declareFunctions(Collection<String> names) {
+        functionNames.addAll(names);
+    }
+
+    public Set<String> getFunctionNames() {
+        return functionNames;
+    }
+
+    // Builds the syntax tree: a "program" node whose children are the top-level statements
+    public Node parseProgram() {
+        Metrics.Span span = Metrics.start();
+        Node program = new Node("program");
+        program.children = new ArrayList<>();
+
+        Node statement;
+        while ((statement = parseNextStatement()) != null) {
+            program.children.add(statement);
         }
+        Metrics.stop(span, Metrics.PARSE);
+        return program;
     }
 
-    private String parseStatement(int indentLevel) {
-        if (currentTokenIndex >= tokens.size()) {
-            return "";
-        }
-    
-        Token token = tokens.get(currentTokenIndex);
-    
-        // Ignore closing braces
-        if (token.getType() == TokenType.CURLY_CLOSE) {
-            advance();
-            return "";
-        }
-        String indentation = "    ".repeat(indentLevel); // Ensure correct indentation
-    
-        // Handle IDENTIFIERS (commands, assignments, functions)
-        if (token.getType() == TokenType.IDENTIFIER) {
-            if (isFunctionDefinition()) {
-                return parseFunctionDefinition(indentLevel);
-            } else if (lookAhead(1) != null && lookAhead(1).getType() == TokenType.LPAREN) {
-                return parseFunctionCall(indentLevel);
-            } else if (isCommand(token.getValue())) {
-                String stmt = parseCommand(indentLevel);
-    
-                // ✅ Fix: Wrap f-strings in print() if needed
-                if (stmt.startsWith("f\"") && stmt.contains("{")) {
-                    stmt = "print(" + stmt + ")";
-                }
-    
-                return indentation + stmt;
-            } else if (lookAhead(1) != null && lookAhead(1).getType() == TokenType.ASSIGNMENT) {
-                return indentation + parseAssignment(indentLevel);
-            } else {
-                return indentation + parseCommand(indentLevel);
+    // Parses one top-level statement at a time so callers can emit it and let it go; null at end of input.
+    // Constants in it are folded by ConstantFolder, which drops statements that can never run, and file
+    // commands are rewritten to native Python operations where NativeCommands can.
+    public Node parseNextStatement() {
+        Node statement;
+        do {
+            skipSeparators();
+            if (lexer != null) {
+                compact.discardBefore(currentTokenIndex);
+                compactTokenIndex = -1;
             }
-        }
-    
-        // Handle Redirects (>) and Pipelines (|)
-        if (token.getType() == TokenType.OPERATOR) {
-            if (token.getValue().equals(">") || token.getValue().equals("|")) {
-                List<Token> commandTokens = collectCommandTokens(indentLevel);
-    
-                if (token.getValue().equals(">")) {
-                    return parseRedirectOutput(commandTokens, indentLevel);
-                } else if (token.getValue().equals("|")) {
-                    return parsePipeline(commandTokens, indentLevel);
-                }
+            if (atEnd()) {
+                return null;
             }
+            statement = folder.fold(parseStatement());
+        } while (statement == null);
+        return NativeCommands.rewrite(statement);
+    }
+
+    // Token access goes through these so compact streams only materialize values the parser reads
+    private boolean has(int index) {
+        if (index >= limit) {
+            return false;
         }
-    
-        // Handle KEYWORDS and VARIABLES
-        switch (token.getType()) {
-            case KEYWORD:
-                return indentation + parseKeyword(indentLevel);
-            case VARIABLE:
-                return indentation + parseAssignment(indentLevel);
-            case LEFT_BRACKET: // Handle nested conditions
-                return indentation + parseNestedCondition(indentLevel);
-            default:
-                throw new RuntimeException("Syntax Error: Unexpected token " + token);
+        if (compact == null) {
+            return index < tokens.size();
+        }
+        while (index >= compact.size() && lexer != null && lexer.scanCompact()) {
+            // scan until the token exists or the input ends
         }
+        return index < compact.size();
     }
 
-    private String parseNestedCondition(int indentLevel) {
-        System.out.println("Parsing nested condition at index: " + currentTokenIndex);
-    
-        // Match the opening bracket '['
-        match(TokenType.LEFT_BRACKET);
-    
-        // Parse the condition inside the brackets
-        String condition = parseCondition();
-    
-        // Match the closing bracket ']'
-        match(TokenType.RIGHT_BRACKET);
-    
-        // Handle optional semicolon ';' before next statement
-        if (check(TokenType.OPERATOR, ";")) {
-            match(TokenType.OPERATOR, ";");
+    private Token tokenAt(int index) {
+        if (compact == null) {
+            return tokens.get(index);
         }
-    
-        return condition;
+        if (lexer != null) {
+            has(index);
+        }
+        // The parser looks at the same token several times before consuming it; materialize it once
+        if (index != compactTokenIndex) {
+            compactToken = compact.token(index);
+            compactTokenIndex = index;
+        }
+        return compactToken;
     }
 
-    private List<Token> collectCommandTokens(int indentLevel) {
-        List<Token> collected = new ArrayList<>();
+    private TokenType typeAt(int index) {
+        if (lexer != null) {
+            has(index);
+        }
+        return compact != null ? compact.type(index) : tokens.get(index).getType();
+    }
 
-        while (currentTokenIndex < tokens.size()) {
-            Token token = tokens.get(currentTokenIndex);
+    private boolean valueEquals(int index, String value) {
+        if (lexer != null) {
+            has(index);
+        }
+        return compact != null ? compact.valueEquals(index, value) : tokens.get(index).getValue().equals(value);
+    }
 
-            // Stop collecting on statement end
-            if (token.getType() == TokenType.SEMICOLON || token.getType() == TokenType.EOF || token.getType() == TokenType.CURLY_CLOSE) {
-                break;
-            }
+    private boolean atEnd() {
+        return !has(currentTokenIndex) || typeAt(currentTokenIndex) == TokenType.EOF;
+    }
 
-            collected.add(token);
-            advance();
+    private Token consume() {
+        if (atEnd()) {
+            throw new RuntimeException("Syntax Error: Unexpected end of input");
         }
+        return tokenAt(currentTokenIndex++);
+    }
 
-        // Optionally consume trailing semicolon if exists
-        if (currentTokenIndex < tokens.size() && tokens.get(currentTokenIndex).getType() == TokenType.SEMICOLON) {
-            advance();
+    // Newlines and ';' separate statements
+    private void skipSeparators() {
+        while (check(TokenType.NEWLINE) || (check(TokenType.OPERATOR, ";") && !isCaseArmEnd())) {
+            currentTokenIndex++;
         }
+    }
 
-        return collected;
+    private void skipNewlines() {
+        while (check(TokenType.NEWLINE)) {
+            currentTokenIndex++;
+        }
     }
 
-    private String parseKeyword(int indentLevel) {
+    // Every statement, nested or top-level, comes through here. A compound command's header pushes a frame
+    // and this loop parses its body one statement at a time, so nesting depth costs heap, not thread stack.
+    // With metrics on, each statement is timed as its construct, nested statements included.
+    private Node parseStatement() {
+        Node statement = beginStatement();
+        while (true) {
+            if (statement != null) {
+                if (frames.isEmpty()) {
+                    return statement;
+                }
+                frames.peek().add(statement);
+            }
+            Frame frame = frames.peek();
+            Node finished = frame.next();
+            if (finished == null) {
+                statement = beginStatement();
+            } else {
+                frames.pop();
+                if (frame.span != null) {
+                    Metrics.stop(frame.span, Metrics.construct(finished.type));
+                }
+                statement = finished;
+            }
+        }
+    }
+
+    // A complete simple statement, or null after pushing the frame of a compound command
+    private Node beginStatement() {
+        Metrics.Span span = Metrics.start();
+        Node statement = parseConstruct();
+        if (statement == null) {
+            frames.peek().span = span;
+        } else if (span != null) {
+            Metrics.stop(span, Metrics.construct(statement.type));
+        }
+        return statement;
+    }
+
+    private Node parseConstruct() {
+        Token token = tokenAt(currentTokenIndex);
+
+        switch (token.getType()) {
+            case KEYWORD:
+                return parseKeyword();
+            case IDENTIFIER:
+                if (isFunctionDefinition()) {
+                    return parseFunctionDefinition();
+                }
+                if (checkAhead(1, TokenType.ASSIGNMENT)) {
+                    return parseAssignment();
+                }
+                return parseCommandStatement();
+            case VARIABLE:
+                if (checkAhead(1, TokenType.ASSIGNMENT)) {
+                    return parseAssignment();
+                }
+                return parseCommandStatement();
+            case STRING:
+            case NUMBER:
+                return parseCommandStatement();
+            case LEFT_BRACKET: // A bare test, usually followed by && or ||
+                Node test = new Node("test");
+                test.condition = parseTestCondition();
+                return parseLogicalChain(test);
+            default:
+                throw new RuntimeException("Syntax Error: Unexpected token " + token);
+        }
+    }
+
+    private Node parseKeyword() {
         Token token = match(TokenType.KEYWORD);
-    
+
         switch (token.getValue()) {
             case "if":
-                return parseIfStatement(indentLevel);
+                return openIfStatement();
             case "while":
-                return parseWhileLoop(indentLevel);
+                return openWhileLoop();
             case "for":
-                return parseForLoop(indentLevel);
+                return openForLoop();
             case "case":
-                return parseCaseStatement(collectCaseTokens(), indentLevel);
+                return openCaseStatement();
+            case "function":
+                return parseFunctionKeyword();
             case "echo":
-                String echoStatement = parseEcho(indentLevel);
-                return convertToFString(echoStatement);
-            case "else":
-                return "    ".repeat(indentLevel) + "else:";
-            case "fi":
-            case "then":
-            case "do":
-            case "done":
-                return "";
+                return parseLogicalChain(parsePipeline(parseEcho()));
             case "break":
-                return "    ".repeat(indentLevel) + "break";  // Ensure this is inside a loop
+                return new Node("break");
+            case "continue":
+                return new Node("continue");
             default:
                 throw new RuntimeException("Syntax Error: Unexpected keyword " + token.getValue());
         }
     }
 
-    private List<Token> collectCaseTokens() {
-        List<Token> caseTokens = new ArrayList<>();
+    // A compound command whose body is being parsed. parseStatement() calls next() before each statement of
+    // the body and add() after it; next() returns the finished command once its closing token is matched.
+    private abstract class Frame {
+        Metrics.Span span;
+        Node block;          // where the body's statements go
 
-        while (currentTokenIndex < tokens.size()) {
-            Token token = tokens.get(currentTokenIndex);
-            caseTokens.add(token);
+        Frame(Node block) {
+            this.block = block;
+        }
 
-            if (token.getType() == TokenType.KEYWORD && token.getValue().equals("esac")) {
-                advance(); // Move past "esac"
-                break;
-            }
+        abstract Node next();
 
-            advance();
+        void add(Node statement) {
+            block.children.add(statement);
         }
+    }
 
-        return caseTokens;
+    // Skips separators; true while the block has statements before one of the given keywords
+    private boolean blockContinues(String... terminators) {
+        skipSeparators();
+        return !atEnd() && !checkAny(terminators);
     }
 
-    private String convertToFString(String content) {
-        if (content.contains("$")) {
-            // Convert $name → {name}
-            content = content.replaceAll("\\$(\\w+)", "\\{$1}");
+    private Node openIfStatement() {
+        frames.push(new IfFrame(parseIfBranch()));
+        return null;
+    }
 
-            // Ensure f-string for print statements
-            if (content.startsWith("print(\"")) {
-                return content.replace("print(\"", "print(f\"").replace("\")", "\")");
-            } else {
-                return "f\"" + content.replace("\"", "") + "\"";
-            }
+    // One if/elif branch up to its 'then'; the else chain hangs off elseBody and shares the one 'fi'
+    private Node parseIfBranch() {
+        if (diagnostics.isDebugEnabled()) {
+            diagnostics.debug("Parsing if statement at index: " + currentTokenIndex);
         }
-        return content; // Return unchanged if no variables
+
+        Node ifNode = new Node("if");
+        ifNode.condition = parseTestCondition();
+        skipSeparators();
+        match(TokenType.KEYWORD, "then");
+        ifNode.body = newList("block");
+        return ifNode;
     }
 
-    private String parseIfStatement(int indentLevel) {
-        System.out.println("Parsing if statement at index: " + currentTokenIndex);
-    
-        // Match the opening bracket '['
-        match(TokenType.LEFT_BRACKET);
-    
-        // Parse the condition inside the brackets
-        String condition = parseCondition();
-    
-        // Match the closing bracket ']'
-        match(TokenType.RIGHT_BRACKET);
-    
-        // Handle optional semicolon ';' before 'then'
-        if (check(TokenType.OPERATOR, ";")) {
-            match(TokenType.OPERATOR, ";");
+    private class IfFrame extends Frame {
+        final Node ifNode;
+        Node branch;         // the if or elif being parsed
+        boolean inElse;
+
+        IfFrame(Node ifNode) {
+            super(ifNode.body);
+            this.ifNode = ifNode;
+            this.branch = ifNode;
         }
-    
-        // Match the 'then' keyword
-        match(TokenType.KEYWORD, "then");
-    
-        // Build the Python if statement
-        StringBuilder block = new StringBuilder();
-        block.append("    ".repeat(indentLevel)).append("if ").append(convertCondition(condition)).append(":");
-    
-        // Parse the 'then' block
-        boolean thenHasStatements = false;
-        while (!check("fi") && !check("else")) {
-            String stmt = parseStatement(indentLevel + 1);
-            if (!stmt.isBlank()) {
-                block.append("\n").append(stmt);
-                thenHasStatements = true;
+
+        @Override
+        Node next() {
+            while (!(inElse ? blockContinues("fi") : blockContinues("elif", "else", "fi"))) {
+                if (!inElse && check("elif")) {
+                    match(TokenType.KEYWORD, "elif");
+                    branch.elseBody = parseIfBranch();
+                    branch = branch.elseBody;
+                    block = branch.body;
+                } else if (!inElse && check("else")) {
+                    match(TokenType.KEYWORD, "else");
+                    branch.elseBody = newList("block");
+                    block = branch.elseBody;
+                    inElse = true;
+                } else {
+                    match(TokenType.KEYWORD, "fi");
+                    return ifNode;
+                }
             }
+            return null;
         }
-    
-        // Add a 'pass' statement if the 'then' block is empty
-        if (!thenHasStatements) {
-            block.append("\n").append("    ".repeat(indentLevel + 1)).append("pass");
-        }
-    
-        // Handle the optional 'else' block
-        if (check("else")) {
-            match(TokenType.KEYWORD, "else");
-            block.append("\n").append("    ".repeat(indentLevel)).append("else:");
-    
-            boolean elseHasStatements = false;
-            while (!check("fi")) {
-                String stmt = parseStatement(indentLevel + 1);
-                if (!stmt.isBlank()) {
-                    block.append("\n").append(stmt);
-                    elseHasStatements = true;
+    }
+
+    private Node openWhileLoop() {
+        Node loop = new Node("while");
+        loop.condition = parseTestCondition();
+        skipSeparators();
+        match(TokenType.KEYWORD, "do");
+        loop.body = newList("block");
+
+        frames.push(new Frame(loop.body) {
+            @Override
+            Node next() {
+                if (blockContinues("done")) {
+                    return null;
                 }
+                match(TokenType.KEYWORD, "done");
+                addLoopIncrement(loop);
+                return countedLoop(loop);
             }
-    
-            // Add a 'pass' statement if the 'else' block is empty
-            if (!elseHasStatements) {
-                block.append("\n").append("    ".repeat(indentLevel + 1)).append("pass");
+        });
+        return null;
+    }
+
+    // Add automatic increment if the body never assigns the loop variable
+    private void addLoopIncrement(Node loop) {
+        String loopVar = extractLoopVariable(loop.condition);
+        if (loopVar != null && !assignsVariable(loop.body, loopVar)) {
+            Node increment = new Node("assign");
+            increment.variable = loopVar;
+            increment.operator = "+=";
+            increment.value = new Node("literal", "1");
+            loop.body.children.add(increment);
+        }
+    }
+
+    // The variable a loop condition compares, e.g. i in "[ $i -le 10 ]"
+    private String extractLoopVariable(Node condition) {
+        if (!"comparison_op".equals(condition.type)) {
+            return null;
+        }
+        if ("variable".equals(condition.left.type)) {
+            return condition.left.variable;
+        }
+        if ("variable".equals(condition.right.type)) {
+            return condition.right.variable;
+        }
+        return null;
+    }
+
+    // while [ $i -le N ] whose body ends in i += 1, the only write to i or N, and never continues is a
+    // counted loop: it becomes for i in range(i, N + 1), which CPython runs several times faster.
+    // Counting down works the same with -gt/-ge and i -= 1.
+    private Node countedLoop(Node loop) {
+        Node condition = loop.condition;
+        String loopVar = extractLoopVariable(condition);
+        List<Node> body = loop.body.children;
+        if (loopVar == null || body.isEmpty() || condition.text == null) {
+            return loop;
+        }
+        switch (condition.text) {
+            case "-lt": case "-le": case "-gt": case "-ge":
+                break;
+            default:
+                return loop;  // = and != don't bound a count; [[ a < b ]] compares strings
+        }
+
+        // The counter on the left: [ 10 -ge $i ] is i <= 10
+        boolean counterLeft = "variable".equals(condition.left.type) && loopVar.equals(condition.left.variable);
+        Node bound = counterLeft ? condition.right : condition.left;
+        String operator = counterLeft ? condition.operator : mirrorOperator(condition.operator);
+        String boundVar = "variable".equals(bound.type) ? bound.variable : null;
+        if (!(boundVar != null && !boundVar.equals(loopVar)
+                || "literal".equals(bound.type) && LOOP_BOUND.matcher(bound.text).matches())) {
+            return loop;
+        }
+
+        int step = loopStep(body.get(body.size() - 1), loopVar);
+        if (step != (operator.startsWith("<") ? 1 : -1)) {
+            return loop;
+        }
+        List<Node> statements = body.subList(0, body.size() - 1);
+        if (writesVariable(statements, loopVar) || (boundVar != null && writesVariable(statements, boundVar))
+                || continuesLoop(statements)) {
+            return loop;
+        }
+
+        Node range = new Node("counted_range");
+        range.left = new Node("variable");
+        range.left.variable = loopVar;
+        range.operator = operator;
+        range.right = bound;
+
+        Node counted = new Node("for");
+        counted.variable = loopVar;
+        counted.iterable = range;
+        counted.body = loop.body;
+        body.remove(body.size() - 1);
+        return counted;
+    }
+
+    private String mirrorOperator(String operator) {
+        return switch (operator) {
+            case "<" -> ">";
+            case "<=" -> ">=";
+            case ">" -> "<";
+            default -> "<=";
+        };
+    }
+
+    // 1 for i += 1 or i=$((i + 1)), -1 for i -= 1 or i=$((i - 1)), 0 for anything else
+    private int loopStep(Node statement, String loopVar) {
+        if (!"assign".equals(statement.type) || !loopVar.equals(statement.variable) || statement.value == null) {
+            return 0;
+        }
+        Node value = statement.value;
+        if (statement.operator != null) {
+            boolean one = "literal".equals(value.type) && "1".equals(value.text);
+            return !one ? 0 : "+=".equals(statement.operator) ? 1 : "-=".equals(statement.operator) ? -1 : 0;
+        }
+        if (!"arithmetic".equals(value.type)) {
+            return 0;
+        }
+        if (value.text.equals(loopVar + " + 1") || value.text.equals("1 + " + loopVar)) {
+            return 1;
+        }
+        return value.text.equals(loopVar + " - 1") ? -1 : 0;
+    }
+
+    // Whether any statement, at any depth, assigns the variable or loops over it
+    private boolean writesVariable(List<Node> statements, String variable) {
+        ArrayDeque<Node> work = new ArrayDeque<>(statements);
+        while (!work.isEmpty()) {
+            Node node = work.pop();
+            if (("assign".equals(node.type) || "for".equals(node.type)) && variable.equals(node.variable)) {
+                return true;
             }
+            pushStatements(work, node);
         }
-    
-        // Match the 'fi' keyword
-        match(TokenType.KEYWORD, "fi");
-    
-        return block.toString();
-    }
-
-    private String parseWhileLoop(int indentLevel) {
-    // Parse condition
-    match(TokenType.LEFT_BRACKET);
-    String condition = parseCondition();
-    match(TokenType.RIGHT_BRACKET);
-    
-    if (check(TokenType.OPERATOR, ";")) {
-        match(TokenType.OPERATOR, ";");
-    }
-    
-    match(TokenType.KEYWORD, "do");
-    
-    StringBuilder block = new StringBuilder();
-    String indentation = "    ".repeat(indentLevel);
-    block.append(indentation).append("while ").append(convertCondition(condition)).append(":");
-    
-    // Extract likely loop variable from condition
-    String loopVar = extractLoopVariable(condition);
-    boolean hasIncrement = false;
-    boolean hasStatements = false;
-    
-    // Parse loop body
-    while (!check("done")) {
-        String stmt = parseStatement(indentLevel + 1);
-        if (!stmt.isBlank()) {
-            block.append("\n").append(stmt);
-            hasStatements = true;
-            
-            // Check for increment of our loop variable
-            if (loopVar != null && stmt.matches(".*\\b" + loopVar + "\\s*[+\\-*/]?=.+")) {
-                hasIncrement = true;
+        return false;
+    }
+
+    // continue skips the increment at the end of the body; a nested loop's continue is its own
+    private boolean continuesLoop(List<Node> statements) {
+        ArrayDeque<Node> work = new ArrayDeque<>(statements);
+        while (!work.isEmpty()) {
+            Node node = work.pop();
+            if ("continue".equals(node.type)) {
+                return true;
+            }
+            if (!"while".equals(node.type) && !"for".equals(node.type)) {
+                pushStatements(work, node);
             }
         }
+        return false;
     }
-    
-    // Add automatic increment if needed
-    if (!hasIncrement && loopVar != null) {
-        block.append("\n")
-             .append("    ".repeat(indentLevel + 1))
-             .append(loopVar)
-             .append(" += 1");
-    }
-    
-    // Handle empty loops
-    if (!hasStatements) {
-        block.append("\n")
-             .append("    ".repeat(indentLevel + 1))
-             .append("pass");
-    }
-    
-    match(TokenType.KEYWORD, "done");
-    return block.toString();
-}
 
-private String extractLoopVariable(String condition) {
-    // Patterns to detect loop variables in conditions
-    // Examples: "$i -le 10" or "count <= 5"
-    String[] patterns = {
-        "\\$(\\w+)\\s+[-][a-z]+\\s+",  // Bash style ($i -le 10)
-        "(\\w+)\\s*([<>]=?|==|!=)\\s*" // Python style (i <= 10)
-    };
-    
-    for (String pattern : patterns) {
-        java.util.regex.Matcher m = Pattern.compile(pattern).matcher(condition);
-        if (m.find()) {
-            return m.group(1); // Return the variable name
-        }
-    }
-    return null;
-}
-    
-      
+    // The statements nested in a compound statement: blocks, branches, case arms and the right of && / ||
+    private void pushStatements(ArrayDeque<Node> work, Node node) {
+        if (node.children != null) {
+            node.children.forEach(work::push);
+        }
+        for (Node nested : new Node[] {node.body, node.elseBody, node.right}) {
+            if (nested != null) {
+                work.push(nested);
+            }
+        }
+    }
 
-    private String parseForLoop(int indentLevel) {
+    private boolean assignsVariable(Node block, String variable) {
+        for (Node statement : block.children) {
+            if ("assign".equals(statement.type) && variable.equals(statement.variable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Node openForLoop() {
         Token var = match(TokenType.IDENTIFIER);
-    
+
         if (!check(TokenType.KEYWORD, "in")) {
             throw new RuntimeException("Syntax Error: Expected 'in' after for-loop variable.");
         }
         match(TokenType.KEYWORD, "in");
-    
-        List<String> items = new ArrayList<>();
-    
+
+        Node loop = new Node("for");
+        loop.variable = var.getValue();
+
         // Handle range expressions like {1..5}
         if (check(TokenType.CURLY_OPEN)) {
-            match(TokenType.CURLY_OPEN); // Consume '{'
-    
-            // Expect a NUMBER token
+            match(TokenType.CURLY_OPEN);
             Token startToken = match(TokenType.NUMBER);
-            String startValue = startToken.getValue();
-    
-            // Expect '..' as a separate token
             if (!check(TokenType.RANGE_OPERATOR)) {
                 throw new RuntimeException("Syntax Error: Expected '..' inside range expression.");
             }
             match(TokenType.RANGE_OPERATOR);
-            
-    
-            // Expect a NUMBER token
             Token endToken = match(TokenType.NUMBER);
-            String endValue = endToken.getValue();
-    
-            // Ensure closing '}'
             if (!check(TokenType.CURLY_CLOSE)) {
                 throw new RuntimeException("Syntax Error: Expected '}' at end of range expression.");
             }
             match(TokenType.CURLY_CLOSE);
-    
-            // Convert `{1..5}` to Python's `range(1, 6)`
+
             try {
-                int startInt = Integer.parseInt(startValue);
-                int endInt = Integer.parseInt(endValue);
-                items.add("range(" + startInt + ", " + (endInt + 1) + ")"); // Python range is exclusive
+                Integer.parseInt(startToken.getValue());
+                Integer.parseInt(endToken.getValue());
             } catch (NumberFormatException e) {
                 throw new RuntimeException("Syntax Error: Range bounds must be numbers.");
             }
+            Node range = new Node("range");
+            range.left = new Node("literal", startToken.getValue());
+            range.right = new Node("literal", endToken.getValue());
+            loop.iterable = range;
         } else {
-            // Handle normal lists (not range)
-            while (currentTokenIndex < tokens.size()) {
-                Token token = tokens.get(currentTokenIndex);
-    
-                if (token.getType() == TokenType.NUMBER || token.getType() == TokenType.IDENTIFIER || token.getType() == TokenType.STRING) {
-                    String value = token.getValue();
-    
-                    // Ensure correct formatting for strings
-                    if (token.getType() == TokenType.STRING) {
-                        items.add(value);  // Strings are already quoted in tokenization
-                    } else if (!isNumber(value)) {
-                        items.add("\"" + value + "\""); // Wrap non-numeric values in quotes
-                    } else {
-                        items.add(value);
-                    }
-                    advance();
-                } else {
-                    break;
-                }
+            // A word list: numbers, words, strings, variables, globs and $( ) substitutions
+            Node items = newList("words");
+            while (check(TokenType.NUMBER) || check(TokenType.IDENTIFIER) || check(TokenType.STRING)
+                    || check(TokenType.VARIABLE) || check(TokenType.GLOB)) {
+                items.children.add(parseWord());
             }
+            loop.iterable = items;
         }
-    
-        // Handle optional ';' before 'do'
-        if (check(TokenType.OPERATOR, ";")) {
-            match(TokenType.OPERATOR, ";");
-        }
-    
-        // Ensure 'do' exists
+
+        skipSeparators();
         if (!check(TokenType.KEYWORD, "do")) {
-            throw new RuntimeException("Syntax Error: Expected 'do' in for-loop, but found: " + tokens.get(currentTokenIndex));
+            throw new RuntimeException("Syntax Error: Expected 'do' in for-loop, but found: " + tokenAt(currentTokenIndex));
         }
         match(TokenType.KEYWORD, "do");
-    
-        // Generate Python for-loop syntax
-        StringBuilder block = new StringBuilder();
-        block.append("    ".repeat(indentLevel))
-             .append("for ")
-             .append(var.getValue())
-             .append(" in ")
-             .append(String.join(", ", items))
-             .append(":");
-    
-        // Ensure 'done' exists before parsing statements
-        while (currentTokenIndex < tokens.size() && !check(TokenType.KEYWORD, "done")) {
-            String stmt = parseStatement(indentLevel + 1);
-    
-            // Handle print formatting properly
-            if (stmt.startsWith("f\"") && stmt.contains("{")) {
-                stmt = "print(" + stmt + ")";
-            } else if (stmt.startsWith("print(")) {
-                String content = stmt.substring(6, stmt.length() - 1).trim();
-                if (content.contains("{")) {
-                    stmt = "print(f\"" + content + "\")";
-                } else {
-                    stmt = "print(" + content + ")";
+
+        loop.body = newList("block");
+
+        frames.push(new Frame(loop.body) {
+            @Override
+            Node next() {
+                if (blockContinues("done")) {
+                    return null;
+                }
+                if (!check(TokenType.KEYWORD, "done")) {
+                    throw new RuntimeException("Syntax Error: Expected 'done' to close for-loop.");
                 }
+                match(TokenType.KEYWORD, "done");
+                return loop;
             }
-    
-            block.append("\n").append("    ".repeat(indentLevel + 1)).append(stmt.trim());
-
-        }
-    
-        // Ensure 'done' is matched
-        if (!check(TokenType.KEYWORD, "done")) {
-            throw new RuntimeException("Syntax Error: Expected 'done' to close for-loop.");
-        }
-        match(TokenType.KEYWORD, "done");
-    
-        return block.toString();
+        });
+        return null;
     }
-    
-    
-    
 
-    private String parseFunctionDefinition(int indentLevel) {
-        // Match function name
-        Token funcNameToken = match(TokenType.IDENTIFIER);
-        String funcName = funcNameToken.getValue();
+    private Node openCaseStatement() {
+        if (!check(TokenType.VARIABLE) && !check(TokenType.IDENTIFIER) && !check(TokenType.STRING)) {
+            throw new RuntimeException("Syntax Error: Expected variable after 'case' but found '"
+                                       + tokenAt(currentTokenIndex).getValue() + "'");
+        }
+        Node caseNode = newList("case");
+        caseNode.value = parseWord();
 
-        // Match parentheses ()
-        match(TokenType.LEFT_PAREN);
-        match(TokenType.RIGHT_PAREN);
+        if (!check(TokenType.KEYWORD, "in")) {
+            throw new RuntimeException("Syntax Error: Expected 'in' after case subject");
+        }
+        match(TokenType.KEYWORD, "in");
+        skipNewlines();
 
-        // Match opening brace {
-        match(TokenType.CURLY_OPEN);
+        frames.push(new CaseFrame(caseNode));
+        return null;
+    }
 
-        // Capture output inside the block
-        StringBuilder sb = new StringBuilder();
-        sb.append("    ".repeat(indentLevel)).append("def ").append(funcName).append("():\n");
+    // Arms one after another: patterns, then statements up to ';;' or 'esac'
+    private class CaseFrame extends Frame {
+        final Node caseNode;
+        Node arm;            // null between arms
 
-        // Parse the block body directly here
-        parseBlock(indentLevel + 1);
+        CaseFrame(Node caseNode) {
+            super(null);
+            this.caseNode = caseNode;
+        }
 
-        return sb.toString().stripTrailing();
-    }
+        @Override
+        Node next() {
+            while (true) {
+                if (arm == null) {
+                    if (check("esac")) {
+                        match(TokenType.KEYWORD, "esac");
+                        return caseNode;
+                    }
+                    if (atEnd()) {
+                        throw new RuntimeException("Syntax Error: Expected 'esac' to close case statement.");
+                    }
+                    arm = parseCaseArmPatterns();
+                    block = arm.body;
+                }
 
-    private String parseFunctionCall(int indentLevel) {
-        Token funcName = match(TokenType.IDENTIFIER);
-        match(TokenType.LEFT_PAREN);
-        if (!check(TokenType.RIGHT_PAREN)) {
-            // Handle arguments if they exist
-            List<String> arguments = new ArrayList<>();
-            while (!check(TokenType.RIGHT_PAREN)) {
-                Token arg = matchAny(TokenType.IDENTIFIER, TokenType.VARIABLE, TokenType.STRING, TokenType.NUMBER);
-                arguments.add(arg.getValue());
-                if (check(TokenType.COMMA, ",")) {
-                    match(TokenType.COMMA, ",");
+                skipSeparators();
+                if (!isCaseArmEnd() && !check("esac") && !atEnd()) {
+                    return null;
+                }
+                if (isCaseArmEnd()) {
+                    currentTokenIndex += 2;
                 }
+                skipNewlines();
+                caseNode.children.add(arm);
+                arm = null;
             }
-            match(TokenType.RIGHT_PAREN);
-            return "    ".repeat(indentLevel) + funcName.getValue() + "(" + String.join(", ", arguments) + ")";
         }
-        match(TokenType.RIGHT_PAREN);
-
-        return "    ".repeat(indentLevel) + funcName.getValue() + "()";
     }
 
-    private String parseCommand(int indentLevel) {
-        Token command = match(TokenType.IDENTIFIER);
-        List<String> args = new ArrayList<>();
-
-        while (currentTokenIndex < tokens.size()) {
-            Token next = tokens.get(currentTokenIndex);
-
-            if (next.getType() == TokenType.KEYWORD || next.getType() == TokenType.EOF || next.getType() == TokenType.SEMICOLON) {
-                break;
-            }
-
-            String argument = match(next.getType()).getValue();
-
-            // Convert only arguments that contain variables
-            if (argument.contains("$")) {
-                argument = convertToFString(argument);
-            } else {
-                argument = "\"" + argument + "\"";  // Ensure normal arguments remain quoted
-            }
-
-            args.add(argument);
+    // Patterns: [(] pattern [| pattern]... )
+    private Node parseCaseArmPatterns() {
+        Node arm = newList("case_arm");
+        if (check(TokenType.LEFT_PAREN)) {
+            match(TokenType.LEFT_PAREN);
         }
-
-        // Handle function calls separately
-        if (command.getValue().equals("greet") && args.isEmpty()) {
-            return "    ".repeat(indentLevel) + "greet()";
+        arm.children.add(parseCasePattern());
+        while (check(TokenType.OPERATOR, "|")) {
+            match(TokenType.OPERATOR, "|");
+            arm.children.add(parseCasePattern());
         }
-
-        // Standard subprocess call
-        String cmdStr = command.getValue() + " " + String.join(", ", args);
-        return "    ".repeat(indentLevel) + "subprocess.run(" + cmdStr.trim() + ", shell=True)";
+        match(TokenType.RIGHT_PAREN);
+        arm.body = newList("block");
+        return arm;
     }
 
-    private String parseEcho(int indentLevel) {
-        List<String> arguments = new ArrayList<>();
-        boolean containsVariable = false;
-    
-        while (currentTokenIndex < tokens.size()) {
-            Token next = tokens.get(currentTokenIndex);
-    
-            // Stop parsing if a new statement starts
-            if (next.getType() == TokenType.KEYWORD || 
-                next.getType() == TokenType.CURLY_CLOSE || 
-                next.getType() == TokenType.EOF || 
-                (next.getType() == TokenType.OPERATOR && next.getValue().equals(";"))) {
-                break;
-            }
-    
-            // Acceptable argument types
-            if (next.getType() == TokenType.STRING || next.getType() == TokenType.IDENTIFIER ||
-                next.getType() == TokenType.VARIABLE || next.getType() == TokenType.NUMBER) {
-                
-                String value = match(next.getType()).getValue();
-    
-                // If it's a variable ($i), convert it properly
-                if (next.getType() == TokenType.VARIABLE) {
-                    containsVariable = true;
-                    value = "{" + value.replace("$", "") + "}";  // Convert $i -> {i}
-                }
-                
-                arguments.add(value);
-            } else {
-                // Move to the next token if it's not an acceptable argument type
-                currentTokenIndex++;
-            }
+    // A single pattern; several tokens before the next '|' or ')' form a glob such as *.txt
+    private Node parseCasePattern() {
+        int start = currentTokenIndex;
+        Node pattern = parseWord();
+        if (check(TokenType.RIGHT_PAREN) || check(TokenType.OPERATOR, "|")) {
+            return "glob".equals(pattern.type) && "*".equals(pattern.text) ? new Node("wildcard") : pattern;
         }
-    
-        // ✅ Ensure correct f-string formatting
-        String output = String.join(" ", arguments);
-        if (containsVariable) {
-            output = "f\"" + output + "\"";  // Only wrap in f-string if variables exist
-        } else {
-            output = "\"" + output + "\"";   // Normal string without f-prefix
+
+        StringBuilder glob = new StringBuilder();
+        currentTokenIndex = start;
+        while (!atEnd() && !check(TokenType.RIGHT_PAREN) && !check(TokenType.OPERATOR, "|")) {
+            glob.append(consume().getValue());
         }
-    
-        return "print(" + output + ")";
+        return new Node("glob", glob.toString());
     }
 
-    
+    private boolean isCaseArmEnd() {
+        return check(TokenType.OPERATOR, ";") && checkAhead(1, TokenType.OPERATOR) && valueEquals(currentTokenIndex + 1, ";");
+    }
 
-    private String parseAssignment(int indentLevel) {
-        Token variable = matchAny(TokenType.IDENTIFIER, TokenType.VARIABLE);
-        match(TokenType.ASSIGNMENT, "=");
+    private Node parseFunctionDefinition() {
+        String name = match(TokenType.IDENTIFIER).getValue();
+        match(TokenType.LEFT_PAREN);
+        match(TokenType.RIGHT_PAREN);
+        return openFunctionBody(name);
+    }
 
-        StringBuilder expr = new StringBuilder();
-        while (currentTokenIndex < tokens.size()) {
-            Token token = tokens.get(currentTokenIndex);
+    // function name { ... } and function name() { ... }
+    private Node parseFunctionKeyword() {
+        String name = match(TokenType.IDENTIFIER).getValue();
+        if (check(TokenType.LEFT_PAREN)) {
+            match(TokenType.LEFT_PAREN);
+            match(TokenType.RIGHT_PAREN);
+        }
+        return openFunctionBody(name);
+    }
 
-            if (token.getType() == TokenType.EOF || token.getType() == TokenType.KEYWORD || 
-                token.getType() == TokenType.BRACKET || token.getType() == TokenType.SEMICOLON) {
-                break;
-            }
+    private Node openFunctionBody(String name) {
+        functionNames.add(name);
 
-            // Handle arithmetic expressions like $((x + 1))
-            if (token.getType() == TokenType.DOLLAR && lookAhead(1) != null && 
-            lookAhead(1).getType() == TokenType.LEFT_PAREN) {
-                expr.append(parseArithmeticExpression());
-                advance(); // ✅ Ensure we move forward after parsing
-                continue;
-            }
+        skipNewlines();
+        match(TokenType.CURLY_OPEN);
 
-            // Handle variable interpolation like $x
-            if (token.getType() == TokenType.VARIABLE) {
-                expr.append(token.getValue().replace("$", ""));
-                advance();
-                expr.append(" ");
-                continue;
+        Node function = new Node("function_def");
+        function.functionName = name;
+        function.body = newList("block");
+
+        frames.push(new Frame(function.body) {
+            @Override
+            Node next() {
+                skipSeparators();
+                if (check(TokenType.CURLY_CLOSE)) {
+                    match(TokenType.CURLY_CLOSE);
+                    return function;
+                }
+                if (atEnd()) {
+                    throw new RuntimeException("Syntax Error: Expected '}' to close function " + name);
+                }
+                return null;
             }
+        });
+        return null;
+    }
 
-            // Handle normal values (strings, numbers, etc.)
-            String value = match(token.getType()).getValue();
+    private Node parseAssignment() {
+        Token variable = matchAny(TokenType.IDENTIFIER, TokenType.VARIABLE);
+        match(TokenType.ASSIGNMENT, "=");
 
-            // ✅ FIXED: Wrap non-numeric values in quotes
-            if (!isNumber(value) && !value.startsWith("\"") && !value.startsWith("'")) {
-                value = "\"" + value + "\"";
-            }
+        Node assign = new Node("assign");
+        assign.variable = variable.getValue().replace("$", "");
 
-            expr.append(value).append(" ");
+        Node words = parseWords();
+        if (words.children.isEmpty()) {
+            assign.value = new Node("string", "");
+        } else if (words.children.size() == 1) {
+            assign.value = words.children.get(0);
+        } else {
+            assign.value = words;
         }
+        return assign;
+    }
 
-        return "    ".repeat(indentLevel) + variable.getValue().replace("$", "") + " = " + expr.toString().trim();
+    private Node parseEcho() {
+        Node echo = new Node("echo");
+        echo.value = parseWords();
+        return echo;
     }
 
-    // ✅ Add this function to fix the undefined error
-    private boolean isNumber(String str) {
-        if (str == null || str.isEmpty()) {
-            return false;
-        }
-        try {
-            Double.parseDouble(str);  // Try parsing as a number
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+    // Commands, function calls and the builtins that map onto Python statements
+    private Node parseCommandStatement() {
+        if (check(TokenType.IDENTIFIER)) {
+            Token name = tokenAt(currentTokenIndex);
+            switch (name.getValue()) {
+                case "return": {
+                    currentTokenIndex++;
+                    Node ret = new Node("return");
+                    Node words = parseWords();
+                    ret.value = words.children.isEmpty() ? null : words.children.get(0);
+                    return ret;
+                }
+                case "exit": {
+                    currentTokenIndex++;
+                    Node exit = new Node("exit");
+                    Node words = parseWords();
+                    exit.exitCode = words.children.isEmpty() ? new Node("literal", "0") : words.children.get(0);
+                    return exit;
+                }
+                case "local":
+                case "export":
+                case "readonly":
+                    if (checkAhead(1, TokenType.IDENTIFIER) && checkAhead(2, TokenType.ASSIGNMENT)) {
+                        currentTokenIndex++;
+                        return parseAssignment();
+                    }
+                    break;
+                default:
+                    if (functionNames.contains(name.getValue())) {
+                        currentTokenIndex++;
+                        Node call = new Node("function_call");
+                        call.functionName = name.getValue();
+                        call.value = parseWords();
+                        return call;
+                    }
+            }
         }
+        return parseLogicalChain(parsePipeline(parseCommand()));
     }
 
-    private Token currentToken() {
-        return tokens.get(currentTokenIndex);
+    private Node parseCommand() {
+        Node command = new Node("command");
+        command.value = parseWords();
+        return command;
     }
 
-    private String parseArithmeticExpression() {
-        StringBuilder arithExpr = new StringBuilder();
-        
-        // Skip the '$' and first '('
-        match(TokenType.DOLLAR, "$");
-        match(TokenType.LEFT_PAREN, "(");
-        match(TokenType.LEFT_PAREN, "(");
-
-        int parenCount = 2; // because we entered $((...))
-
-        while (parenCount > 0 && currentTokenIndex < tokens.size()) {
-            Token t = currentToken();
-
-            if (t.getType() == TokenType.LEFT_PAREN) {
-                parenCount++;
-                arithExpr.append("(");
-            } else if (t.getType() == TokenType.RIGHT_PAREN) {
-                parenCount--;
-                if (parenCount == 0) {
-                    match(TokenType.RIGHT_PAREN, ")");
-                    advance(); // exit loop after last ')'
-                    break;
+    // stage | stage | ... with an optional > or >> redirection of the last stage's output
+    private Node parsePipeline(Node first) {
+        Node statement = first;
+
+        if (check(TokenType.OPERATOR, "|")) {
+            List<Node> stages = new ArrayList<>();
+            stages.add(first);
+            while (check(TokenType.OPERATOR, "|")) {
+                match(TokenType.OPERATOR, "|");
+                skipNewlines();
+                if (check(TokenType.KEYWORD, "echo")) {
+                    match(TokenType.KEYWORD, "echo");
+                    stages.add(parseEcho());
+                } else {
+                    stages.add(parseCommand());
                 }
-                arithExpr.append(")");
-            } else if (t.getType() == TokenType.VARIABLE) {
-                arithExpr.append(t.getValue().replace("$", ""));
-            } else {
-                arithExpr.append(t.getValue());
             }
+            statement = new Node("pipeline");
+            statement.children = stages;
+        }
 
-            arithExpr.append(" ");
-            advance();
-        }
-        return arithExpr.toString().trim();
-    }
-
-    private String parseCondition() {
-        StringBuilder condition = new StringBuilder();
-        System.out.println("Parsing condition at index: " + currentTokenIndex);
-    
-        while (!check(TokenType.RIGHT_BRACKET)) {
-            Token token = tokens.get(currentTokenIndex);
-            System.out.println("Condition token: " + token);
-    
-            if (token.getType() == TokenType.VARIABLE) {
-                // Remove the '$' from variable names
-                condition.append(token.getValue().replace("$", ""));
-                advance();
-            } else if (token.getType() == TokenType.IDENTIFIER || token.getType() == TokenType.NUMBER) {
-                condition.append(match(token.getType()).getValue());
-            } else if (token.getType() == TokenType.STRING) {
-                String value = match(TokenType.STRING).getValue();
-                if (!value.startsWith("\"") && !value.startsWith("'")) {
-                    value = "\"" + value + "\""; // Ensure strings are quoted
-                }
-                condition.append(value);
-            } else if (token.getType() == TokenType.OPERATOR) {
-                // Convert Bash operators to Python operators
-                String bashOperator = match(TokenType.OPERATOR).getValue();
-                String pythonOperator = convertOperator(bashOperator);
-                condition.append(" ").append(pythonOperator).append(" ");
-            } else {
-                throw new RuntimeException("Syntax Error: Unexpected token " + token);
+        if (check(TokenType.OPERATOR, ">") || check(TokenType.OPERATOR, ">>")) {
+            Node redirect = new Node("redirect");
+            redirect.operator = consume().getValue();
+            redirect.content = statement;
+            if (atEnd() || isWordTerminator()) {
+                throw new RuntimeException("Syntax Error: Missing filename after redirection operator '" + redirect.operator + "'");
             }
+            redirect.value = parseWord();
+            statement = redirect;
         }
-    
-        return condition.toString().trim();
-    }
-    // ✅ Converts Bash comparison operators to Python syntax
-    private String convertOperator(String bashOp) {
-        return switch (bashOp) {
-            case "-eq" -> "==";
-            case "-ne" -> "!=";
-            case "-lt" -> "<";
-            case "-le" -> "<=";
-            case "-gt" -> ">";
-            case "-ge" -> ">=";
-            default -> bashOp; // Return as-is for unknown operators
-        };
+        return statement;
     }
-    private String convertCondition(String condition) {
-        // Convert Bash style condition to Python style condition
-        return condition.replace("-gt", ">")
-                        .replace("-lt", "<")
-                        .replace("-eq", "==")
-                        .replace("-ne", "!=")
-                        .replace("-le", "<=")
-                        .replace("-ge", ">=");
-    }
-
-    private String parseRedirectOutput(List<Token> tokens, int indentLevel) {
-        StringBuilder command = new StringBuilder();
-        String outputFile = null;
-
-        for (int i = 0; i < tokens.size(); i++) {
-            Token token = tokens.get(i);
-            if (token.getType() == TokenType.OPERATOR && token.getValue().equals(">")) {
-                if (i + 1 < tokens.size()) {
-                    outputFile = tokens.get(i + 1).getValue();
-                }
-                break;
-            } else {
-                command.append(token.getValue()).append(" ");
-            }
+
+    // a && b || c groups left to right, ((a && b) || c), as Bash runs each command from the status of everything
+    // before it. One frame parses the operands in turn, so a long a && b && c ... chain doesn't recurse either.
+    private Node parseLogicalChain(Node left) {
+        if (!frames.isEmpty() && frames.peek() instanceof LogicalFrame) {
+            return left;  // an operand: the chain's frame takes the operator that follows
         }
+        if (check(TokenType.OPERATOR, "&&") || check(TokenType.OPERATOR, "||")) {
+            frames.push(new LogicalFrame(left));
+            return null;
+        }
+        return left;
+    }
+
+    private class LogicalFrame extends Frame {
+        Node chain;
 
-        if (outputFile == null || outputFile.isEmpty()) {
-            throw new RuntimeException("Syntax Error: Missing filename after redirection operator '>'");
+        LogicalFrame(Node first) {
+            super(null);
+            extend(first);
         }
 
-        return "    ".repeat(indentLevel) + "with open('" + outputFile + "', 'w') as f:\n" +
-               "        f.write(subprocess.check_output('" + command.toString().trim() + "', shell=True).decode('utf-8'))";
-    }    
+        // The chain so far becomes the left operand of the next operator
+        private void extend(Node left) {
+            chain = new Node("logical_op");
+            chain.left = left;
+            chain.operator = consume().getValue();
+            skipNewlines();
+        }
 
-    private void parseBlock(int indentLevel) {
-        while (!check(TokenType.CURLY_CLOSE) && !check(TokenType.EOF)) {
-            if (check(TokenType.KEYWORD) && tokens.get(currentTokenIndex).getValue().equals("echo")) {
-                match(TokenType.KEYWORD, "echo"); // properly consume 'echo'
-                System.out.println(parseEcho(indentLevel));
-            } else if (check(TokenType.KEYWORD) && tokens.get(currentTokenIndex).getValue().equals("return")) {
-                match(TokenType.KEYWORD, "return"); // properly consume 'return'
-                System.out.println(parseReturn(indentLevel));
-            } else {
-                parseStatement(indentLevel);
+        @Override
+        Node next() {
+            if (chain.right == null) {
+                return null;
             }
-            
-        }
-        match(TokenType.CURLY_CLOSE); // consume the closing }
-    }
-    private String parseReturn(int indentLevel) {
-        String returnValue = "";
-        if (check(TokenType.NUMBER) || check(TokenType.IDENTIFIER) || check(TokenType.VARIABLE)) {
-            returnValue = match(tokens.get(currentTokenIndex).getType()).getValue();
-            if (returnValue.startsWith("$")) {
-                returnValue = returnValue.substring(1); // remove $
+            if (check(TokenType.OPERATOR, "&&") || check(TokenType.OPERATOR, "||")) {
+                extend(chain);
+                return null;
             }
+            return chain;
         }
-        return "    ".repeat(indentLevel) + "return " + returnValue;
-    }
 
-    private String parsePipeline(List<Token> tokens, int indentLevel) {
-        return "    ".repeat(indentLevel) + "subprocess.run(['" + 
-        tokens.stream().map(Token::getValue).collect(Collectors.joining("', '")) + "'], shell=True)";
+        @Override
+        void add(Node statement) {
+            chain.right = statement;
+        }
     }
 
-    private String parseSubshell(List<Token> tokens, int indentLevel) {
-        return "    ".repeat(indentLevel) + "subprocess.check_output([" + tokens.get(1).getValue() + "])";
+    // Words up to the end of the simple command
+    private Node parseWords() {
+        Node words = newList("words");
+        while (!atEnd() && !isWordTerminator()) {
+            words.children.add(parseWord());
+        }
+        return words;
     }
 
-    private String parseLogicalOperator(List<Token> tokens, int indentLevel) {
-        String logicalOperator = tokens.get(1).getValue().equals("&&") ? "and" : "or";
-        return "    ".repeat(indentLevel) + tokens.get(0).getValue() + " " + logicalOperator + " " + tokens.get(2).getValue();
+    private boolean isWordTerminator() {
+        switch (typeAt(currentTokenIndex)) {
+            case NEWLINE:
+            case KEYWORD:
+            case CURLY_CLOSE:
+            case RIGHT_PAREN:
+            case EOF:
+                return true;
+            case OPERATOR:
+                if (valueEquals(currentTokenIndex, ">") || valueEquals(currentTokenIndex, ">>")) {
+                    // >&2 style descriptor redirections stay part of the command line
+                    return !(checkAhead(1, TokenType.OPERATOR) && valueEquals(currentTokenIndex + 1, "&"));
+                }
+                return valueEquals(currentTokenIndex, ";") || valueEquals(currentTokenIndex, "|")
+                        || valueEquals(currentTokenIndex, "&&") || valueEquals(currentTokenIndex, "||");
+            default:
+                return false;
+        }
     }
 
-    private String parseComparisonOperator(List<Token> tokens, int indentLevel) {
-        String comparisonOperator = convertOperator(tokens.get(1).getValue());
-        return "    ".repeat(indentLevel) + tokens.get(0).getValue() + " " + comparisonOperator + " " + tokens.get(2).getValue();
-    }
+    private Node parseWord() {
+        Token token = consume();
 
-    private String parseBlock(List<Token> tokens, int indentLevel) {
-        // Implement handling for blocks of code inside loops or functions
-        StringBuilder block = new StringBuilder();
-        while (!check("done") && !check("fi") && !check("}")) {
-            block.append(parseStatement(indentLevel + 1)).append("\n");
+        switch (token.getType()) {
+            case STRING:
+                return new Node("string", token.getValue());
+            case NUMBER:
+                return new Node("literal", token.getValue());
+            case GLOB:
+                return new Node("glob", token.getValue());
+            case VARIABLE:
+                if (token.getValue().equals("$") && check(TokenType.LEFT_PAREN)) {
+                    return checkAhead(1, TokenType.LEFT_PAREN) ? parseArithmeticExpression() : parseCommandSubstitution();
+                }
+                Node variable = new Node("variable");
+                variable.variable = token.getValue().substring(1);
+                return variable;
+            default:
+                return new Node("word", token.getValue());
         }
-        return block.toString();
     }
 
-    private String handleBashFunctions(List<Token> tokens, int indentLevel) {
-        if (tokens.get(1).getValue().equals("(")) {
-            // Function Definition
-            String functionName = tokens.get(0).getValue();
-            return "def " + functionName + "():\n";
+    // $( command ), after the '$'
+    private Node parseCommandSubstitution() {
+        match(TokenType.LEFT_PAREN);
+        Node subshell = new Node("subshell");
+        if (check(TokenType.KEYWORD, "echo")) {
+            match(TokenType.KEYWORD, "echo");
+            subshell.command = parsePipeline(parseEcho());
+        } else {
+            subshell.command = parsePipeline(parseCommand());
         }
-        // Function Call
-        return "    ".repeat(indentLevel) + tokens.get(0).getValue() + "()";
+        match(TokenType.RIGHT_PAREN);
+        return subshell;
     }
 
-    private String parseExitCommand(List<Token> tokens, int indentLevel) {
-        return "    ".repeat(indentLevel) + "sys.exit(" + tokens.get(1).getValue() + ")";
-    }
+    // $(( expression )), after the '$'
+    private Node parseArithmeticExpression() {
+        StringBuilder arithExpr = new StringBuilder();
+        match(TokenType.LEFT_PAREN);
+        match(TokenType.LEFT_PAREN);
+
+        int depth = 0; // parentheses opened inside the expression
+        while (true) {
+            Token t = consume();
+            if (t.getType() == TokenType.RIGHT_PAREN && depth == 0) {
+                match(TokenType.RIGHT_PAREN);
+                break;
+            }
+            if (t.getType() == TokenType.LEFT_PAREN) {
+                depth++;
+            } else if (t.getType() == TokenType.RIGHT_PAREN) {
+                depth--;
+            }
 
-    private String parseReturnCommand(List<Token> tokens, int indentLevel) {
-        return "    ".repeat(indentLevel) + "return " + tokens.get(1).getValue();
+            if (arithExpr.length() > 0) {
+                arithExpr.append(" ");
+            }
+            arithExpr.append(t.getType() == TokenType.VARIABLE ? t.getValue().substring(1) : t.getValue());
+        }
+        return ConstantFolder.foldArithmetic(new Node("arithmetic", arithExpr.toString()));
     }
 
-    private String parseCaseStatement(List<Token> tokens, int indentLevel) {
-        StringBuilder caseStatement = new StringBuilder();
+    // [ expr ] or [[ expr ]], optionally chained with && and || to further tests
+    private Node parseTestCondition() {
+        Node condition = parseBracketTest();
+        while ((check(TokenType.OPERATOR, "&&") || check(TokenType.OPERATOR, "||")) && checkAhead(1, TokenType.LEFT_BRACKET)) {
+            Node logical = new Node("logical_op");
+            logical.left = condition;
+            logical.operator = consume().getValue();
+            logical.right = parseBracketTest();
+            condition = logical;
+        }
+        return condition;
+    }
 
-        // ✅ Ensure "case" is followed by a VARIABLE or IDENTIFIER
-        if (tokens.size() < 3 || 
-           (tokens.get(1).getType() != TokenType.VARIABLE && tokens.get(1).getType() != TokenType.IDENTIFIER)) {
-            throw new RuntimeException("Syntax Error: Expected variable after 'case' but found '" 
-                                       + (tokens.size() > 1 ? tokens.get(1).getValue() : "EOF") + "'");
+    private Node parseBracketTest() {
+        match(TokenType.LEFT_BRACKET);
+        boolean doubled = check(TokenType.LEFT_BRACKET);
+        if (doubled) {
+            match(TokenType.LEFT_BRACKET);
         }
 
-        String variable = tokens.get(1).getValue();
+        Node condition = parseCondition();
 
-        // ✅ Find "in" dynamically
-        int inIndex = -1;
-        for (int j = 2; j < tokens.size(); j++) {
-            if (tokens.get(j).getValue().equals("in")) {
-                inIndex = j;
-                break;
-            }
-        }
-        if (inIndex == -1) {
-            throw new RuntimeException("Syntax Error: Expected 'in' after variable '" + variable + "'");
+        match(TokenType.RIGHT_BRACKET);
+        if (doubled) {
+            match(TokenType.RIGHT_BRACKET);
         }
+        return condition;
+    }
 
-        caseStatement.append("    ".repeat(indentLevel)).append("match ").append(variable).append(":\n");
+    // or := and (("||" | "-o") and)*
+    private Node parseCondition() {
+        if (diagnostics.isDebugEnabled()) {
+            diagnostics.debug("Parsing condition at index: " + currentTokenIndex);
+        }
 
-        int i = inIndex + 1; // ✅ Start parsing after "in"
+        Node condition = parseAndCondition();
+        while (check(TokenType.OPERATOR, "||") || check(TokenType.IDENTIFIER, "-o")) {
+            consume();
+            Node logical = new Node("logical_op");
+            logical.left = condition;
+            logical.operator = "||";
+            logical.right = parseAndCondition();
+            condition = logical;
+        }
+        return condition;
+    }
 
-        while (i < tokens.size()) {
-            Token token = tokens.get(i);
+    // and := unary (("&&" | "-a") unary)*
+    private Node parseAndCondition() {
+        Node condition = parseUnaryCondition();
+        while (check(TokenType.OPERATOR, "&&") || check(TokenType.IDENTIFIER, "-a")) {
+            consume();
+            Node logical = new Node("logical_op");
+            logical.left = condition;
+            logical.operator = "&&";
+            logical.right = parseUnaryCondition();
+            condition = logical;
+        }
+        return condition;
+    }
 
-            // ✅ Stop at "esac"
-            if (token.getType() == TokenType.KEYWORD && token.getValue().equals("esac")) {
-                break;
-            }
+    // unary := "!" unary | -z/-n/-f/... operand | operand [comparison operand]
+    private Node parseUnaryCondition() {
+        if (check(TokenType.RIGHT_BRACKET) || atEnd()) {
+            throw new RuntimeException("Syntax Error: Empty condition at index " + currentTokenIndex);
+        }
+        Token token = tokenAt(currentTokenIndex);
+        if (diagnostics.isTraceEnabled()) {
+            diagnostics.trace("Condition token: " + token);
+        }
 
-            // ✅ Accept both STRING and NUMBER as case labels
-            if (token.getType() == TokenType.STRING || token.getType() == TokenType.NUMBER) {
-                caseStatement.append("    ".repeat(indentLevel + 1)).append("case ").append(token.getValue()).append(":\n");
+        if (check(TokenType.OPERATOR, "!")) {
+            consume();
+            Node not = new Node("not");
+            not.value = parseUnaryCondition();
+            return not;
+        }
+        if (token.getType() == TokenType.IDENTIFIER && isUnaryTest(token.getValue())) {
+            consume();
+            Node test = new Node("unary_test");
+            test.operator = token.getValue();
+            test.right = parseOperand();
+            return test;
+        }
 
-                // Find where the block starts
-                int blockStart = i + 2;
-                int blockEnd = blockStart;
-                while (blockEnd < tokens.size() && tokens.get(blockEnd).getType() != TokenType.OPERATOR) {
-                    blockEnd++;
-                }
+        Node left = parseOperand();
+        if (check(TokenType.OPERATOR) && !check(TokenType.OPERATOR, "&&") && !check(TokenType.OPERATOR, "||")
+                || check(TokenType.ASSIGNMENT)) {
+            Node comparison = new Node("comparison_op");
+            comparison.left = left;
+            String bashOperator = consume().getValue();
+            comparison.operator = convertOperator(bashOperator);
+            comparison.text = bashOperator;  // -eq and = both become ==, but only -eq compares numbers
+            comparison.right = parseOperand();
+            return comparison;
+        }
+        return left;
+    }
 
-                // Parse block inside each case
-                caseStatement.append("    ".repeat(indentLevel + 2))
-                             .append(parseBlock(tokens.subList(blockStart, blockEnd), indentLevel + 2))
-                             .append("\n");
+    private Node parseOperand() {
+        switch (typeAt(currentTokenIndex)) {
+            case VARIABLE:
+            case NUMBER:
+            case STRING:
+            case IDENTIFIER:
+                return parseWord();
+            default:
+                throw new RuntimeException("Syntax Error: Unexpected token " + tokenAt(currentTokenIndex));
+        }
+    }
 
-                i = blockEnd + 1;  // Move to the next case pattern
-            } else {
-                i++;  // Move to next token
-            }
+    private boolean isUnaryTest(String value) {
+        switch (value) {
+            case "-z": case "-n": case "-f": case "-d": case "-e": case "-s":
+                return checkAhead(1, TokenType.VARIABLE) || checkAhead(1, TokenType.STRING)
+                        || checkAhead(1, TokenType.IDENTIFIER) || checkAhead(1, TokenType.NUMBER);
+            default:
+                return false;
         }
+    }
 
-        return caseStatement.toString();
+    // ✅ Converts Bash comparison operators to Python syntax
+    private String convertOperator(String bashOp) {
+        return switch (bashOp) {
+            case "-eq", "=" -> "==";
+            case "-ne" -> "!=";
+            case "-lt" -> "<";
+            case "-le" -> "<=";
+            case "-gt" -> ">";
+            case "-ge" -> ">=";
+            default -> bashOp; // Return as-is for unknown operators
+        };
     }
 
-    private String parseBreakStatement(List<Token> tokens, int indentLevel) {
-        return "    ".repeat(indentLevel) + "break";
+    private Node newList(String type) {
+        Node node = new Node(type);
+        node.children = new ArrayList<>();
+        return node;
     }
 
     private Token match(TokenType expected) {
-        if (currentTokenIndex >= tokens.size()) {
+        if (!has(currentTokenIndex)) {
             throw new RuntimeException("Syntax Error: Unexpected end of input. Expected " + expected);
         }
-    
-        Token token = tokens.get(currentTokenIndex);
-        System.out.println("DEBUG: Matching expected '" + expected + "', found: '" + token.getValue() + "'");
-    
+
+        Token token = tokenAt(currentTokenIndex);
+        if (diagnostics.isTraceEnabled()) {
+            diagnostics.trace("Matching expected '" + expected + "', found: '" + token.getValue() + "'");
+        }
+
         if (token.getType() == expected) {
             currentTokenIndex++;
             return token;
         }
-    
+
         throw new RuntimeException("Syntax Error: Expected " + expected + " but found '" + token.getValue() + "' at index " + currentTokenIndex);
     }
-    
+
     private Token match(TokenType expected, String expectedValue) {
-        if (currentTokenIndex >= tokens.size()) {
+        if (!has(currentTokenIndex)) {
             throw new RuntimeException("Syntax Error: Unexpected end of input. Expected '" + expectedValue + "' of type " + expected);
         }
-    
-        Token token = tokens.get(currentTokenIndex);
+
+        Token token = tokenAt(currentTokenIndex);
         if (token.getType() == expected && token.getValue().equals(expectedValue)) {
             currentTokenIndex++;
             return token;
         }
-    
+
         throw new RuntimeException(
-            "Syntax Error: Expected '" + expectedValue + "' of type " + expected + 
+            "Syntax Error: Expected '" + expectedValue + "' of type " + expected +
             " but found '" + token.getValue() + "' of type " + token.getType() + " at index " + currentTokenIndex
         );
     }
 
     private Token matchAny(TokenType... types) {
-        Token token = tokens.get(currentTokenIndex);
+        Token token = tokenAt(currentTokenIndex);
         for (TokenType type : types) {
             if (token.getType() == type) {
                 currentTokenIndex++;
@@ -932,42 +1192,44 @@ private String extractLoopVariable(String condition) {
         throw new RuntimeException("Syntax Error: Unexpected token " + token);
     }
 
-    private Token lookAhead(int offset) {
-        if (currentTokenIndex + offset < tokens.size()) {
-            return tokens.get(currentTokenIndex + offset);
-        }
-        return null;
+    private boolean check(String keyword) {
+        return check(TokenType.KEYWORD, keyword);
     }
 
-    private boolean check(String keyword) {
-        if (currentTokenIndex >= tokens.size()) return false;
-        Token t = tokens.get(currentTokenIndex);
-        return t.getType() == TokenType.KEYWORD && t.getValue().equals(keyword);
+    private boolean checkAny(String... keywords) {
+        for (String keyword : keywords) {
+            if (check(keyword)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private boolean check(TokenType type, String value) {
-        if (currentTokenIndex >= tokens.size()) return false;
-        Token t = tokens.get(currentTokenIndex);
-        return t.getType() == type && t.getValue().equals(value);
+        if (!has(currentTokenIndex)) return false;
+        return typeAt(currentTokenIndex) == type && valueEquals(currentTokenIndex, value);
     }
 
     private boolean check(TokenType type) {
-        if (currentTokenIndex >= tokens.size()) return false;
-        Token t = tokens.get(currentTokenIndex);
-        return t.getType() == type;
+        if (!has(currentTokenIndex)) return false;
+        return typeAt(currentTokenIndex) == type;
     }
 
-    private boolean isCommand(String value) {
-        return value.equals("cat") || value.equals("ls") || value.equals("touch") || value.equals("rm") || value.equals("mkdir");
+    private boolean checkAhead(int offset, TokenType type) {
+        int index = currentTokenIndex + offset;
+        return has(index) && typeAt(index) == type;
     }
 
+    // name ( ) {   with the brace optionally on the next line
     private boolean isFunctionDefinition() {
-        Token t1 = lookAhead(1);
-        Token t2 = lookAhead(2);
-        Token t3 = lookAhead(3);
-        
-        return t1 != null && t1.getType() == TokenType.LEFT_PAREN &&
-               t2 != null && t2.getType() == TokenType.RIGHT_PAREN &&
-               t3 != null && t3.getType() == TokenType.LEFT_BRACKET;
-    }
-}
\ No newline at end of file
+        int i = currentTokenIndex;
+        if (!(checkAhead(1, TokenType.LEFT_PAREN) && checkAhead(2, TokenType.RIGHT_PAREN))) {
+            return false;
+        }
+        i += 3;
+        while (has(i) && typeAt(i) == TokenType.NEWLINE) {
+            i++;
+        }
+        return has(i) && typeAt(i) == TokenType.CURLY_OPEN;
+    }
+}
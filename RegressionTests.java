@@ -0,0 +1,282 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// Conversions that have gone wrong before, checked against their expected Python. Run with
+// java RegressionTests; the exit code is 1 when any check fails.
+public class RegressionTests {
+    private static int checks;
+    private static int failures;
+
+    public static void main(String[] args) {
+        Diagnostics.setDefault(Diagnostics.OFF);
+
+        logicalChains();
+        functionKeyword();
+        deepNesting();
+        pipelineTreeSize();
+        cacheMemoryLimit();
+        nativeOperands();
+        nativeErrors();
+        arithmetic();
+        globLoops();
+
+        System.out.printf("%s %d checks, %d failed%n", failures == 0 ? "✅" : "❌", checks, failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // && and || group left to right: the last command runs on the status of everything before it
+    private static void logicalChains() {
+        check("test && cmd || cmd runs the last command when the test fails",
+                "[ -f x ] && echo a || echo b\n",
+                "import os\n"
+                + "if os.path.isfile(\"x\"):\n"
+                + "    print(\"a\")\n"
+                + "else:\n"
+                + "    print(\"b\")\n");
+        check("test && command || cmd runs the last command when the command fails",
+                "[ -f x ] && grep a f || echo b\n",
+                "import os\n"
+                + "import subprocess\n"
+                + "if not (os.path.isfile(\"x\") and subprocess.run(\"grep a f\", shell=True).returncode == 0):\n"
+                + "    print(\"b\")\n");
+        check("test || test && cmd",
+                "[ -f x ] || [ -d y ] && echo a\n",
+                "import os\n"
+                + "if os.path.isfile(\"x\") or os.path.isdir(\"y\"):\n"
+                + "    print(\"a\")\n");
+        check("a chain of commands stays one shell line",
+                "make && make install || echo failed\n",
+                "import subprocess\n"
+                + "subprocess.run(\"make && make install || echo failed\", shell=True)\n");
+        check("a constant test skips to the first command that runs",
+                "[ 1 -eq 2 ] && echo a || echo b\n",
+                "print(\"b\")\n");
+    }
+
+    // function NAME { ... } without ( ): the splitter keeps the body in one statement for the incremental
+    // and parallel modes
+    private static void functionKeyword() {
+        String script = "function greet {\n"
+                + "    echo \"hello\"\n"
+                + "}\n"
+                + "function later\n"
+                + "{\n"
+                + "    echo \"later\"\n"
+                + "}\n"
+                + "greet\n";
+        String expected = "def greet():\n"
+                + "    print(\"hello\")\n"
+                + "def later():\n"
+                + "    print(\"later\")\n"
+                + "greet()\n";
+        check("function NAME { } converts", script, expected);
+
+        List<StatementSplitter.Range> ranges = StatementSplitter.split(new Lexer(script).tokenizeCompact());
+        StringBuilder split = new StringBuilder();
+        for (StatementSplitter.Range range : ranges) {
+            split.append(range.functions).append('\n');
+        }
+        checkEquals("function NAME { } is one statement to the splitter", "[greet]\n[later]\n[]\n", split.toString());
+
+        checkEquals("function NAME { } converts incrementally", expected, new IncrementalTranspiler().transpile(script));
+        StringBuilder parallel = new StringBuilder();
+        try {
+            new Transpiler().transpileParallel(script, parallel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkEquals("function NAME { } converts in parallel", expected, parallel.toString());
+    }
+
+    // Nesting costs heap, not thread stack: convert, save and load a 3000-level script on a 64 KB stack
+    private static void deepNesting() {
+        String script = BenchmarkCorpus.deeplyNested(3000);
+        String[] results = new String[3];
+        Thread thread = new Thread(null, () -> {
+            try {
+                Transpiler transpiler = new Transpiler();
+                results[0] = transpiler.transpile(script);
+
+                ByteArrayOutputStream saved = new ByteArrayOutputStream();
+                BinaryFormat.writeTree(transpiler.parse(script), saved);
+                Node loaded = BinaryFormat.readTree(new ByteArrayInputStream(saved.toByteArray()));
+                StringBuilder python = new StringBuilder();
+                transpiler.generate(loaded, python);
+                results[1] = python.toString();
+            } catch (Throwable e) {
+                results[2] = e.toString();
+            }
+        }, "small-stack", 64 * 1024);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkEquals("3000 levels of nesting convert and round-trip on a 64 KB stack", "null", String.valueOf(results[2]));
+        checkEquals("a saved and loaded tree converts the same", String.valueOf(results[0]), String.valueOf(results[1]));
+    }
+
+    // A saved pipeline holds each stage once, so its size grows with the source, not with the stage count squared
+    private static void pipelineTreeSize() {
+        String shortPipeline = pipeline(50);
+        String longPipeline = pipeline(200);
+        int shortSize = savedTreeSize(shortPipeline);
+        int longSize = savedTreeSize(longPipeline);
+        checkEquals("a 4x longer pipeline saves to at most 5x the bytes", "true", String.valueOf(longSize < 5 * shortSize));
+        checkEquals("a 200-stage pipeline saves to at most twice its source", "true",
+                String.valueOf(longSize < 2 * longPipeline.length()));
+    }
+
+    private static String pipeline(int stages) {
+        StringBuilder script = new StringBuilder("cat input.txt");
+        for (int i = 1; i < stages; i++) {
+            script.append(" | grep pattern").append(i);
+        }
+        return script.append('\n').toString();
+    }
+
+    private static int savedTreeSize(String script) {
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        try {
+            BinaryFormat.writeTree(new Transpiler().parse(script), saved);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return saved.size();
+    }
+
+    // The memory tier is bounded by the Python it holds, however few entries that is
+    private static void cacheMemoryLimit() {
+        TranspileCache cache = new TranspileCache(100);
+        for (String script : new String[] {"first", "second", "third"}) {
+            cache.get(script, s -> "x".repeat(40));
+        }
+        checkEquals("a 100-character cache keeps two 40-character results", "2 80 1",
+                cache.size() + " " + cache.memoryChars() + " " + cache.stats().evictions);
+        cache.get("huge", s -> "x".repeat(101));
+        checkEquals("a result larger than the whole cache isn't kept", "2 80", cache.size() + " " + cache.memoryChars());
+    }
+
+    // An unquoted $name is split into words and globbed, so only a quoted "$name" is one native operand
+    private static void nativeOperands() {
+        check("rm -rf $dirs removes every word of $dirs",
+                "rm -rf $dirs\n",
+                "import subprocess\n"
+                + "subprocess.run(f\"rm -rf {dirs}\", shell=True)\n");
+        check("$(cat $f) reads every file named in $f",
+                "for l in $(cat $f); do echo $l; done\n",
+                "import subprocess\n"
+                + "for l in subprocess.check_output(f\"cat {f}\", shell=True).decode().rstrip().split():\n"
+                + "    print(f\"{l}\")\n");
+        check("rm -rf \"$dir\" stays native",
+                "rm -rf \"$dir\"\n",
+                "import contextlib\n"
+                + "import os\n"
+                + "import shutil\n"
+                + "import sys\n"
+                + "try:\n"
+                + "    with contextlib.suppress(FileNotFoundError): shutil.rmtree(f\"{dir}\") if os.path.isdir(f\"{dir}\")"
+                + " and not os.path.islink(f\"{dir}\") else os.remove(f\"{dir}\")\n"
+                + "except OSError as file_error:\n"
+                + "    print(f\"rm: cannot remove {file_error.filename!r}: {file_error.strerror}\", file=sys.stderr)\n");
+    }
+
+    // A native file command that fails reports it on stderr and the script goes on, as in Bash. Its output is
+    // flushed, so a later shell command's output comes after it
+    private static void nativeErrors() {
+        check("ls FILE prints the file's name",
+                "ls notes.txt\n",
+                "import os\n"
+                + "import sys\n"
+                + "try:\n"
+                + "    sys.stdout.write(\"\".join(name + \"\\n\" for name in sorted(os.listdir(\"notes.txt\"))"
+                + " if not name.startswith(\".\")))\n"
+                + "    sys.stdout.flush()\n"
+                + "except NotADirectoryError:\n"
+                + "    print(\"notes.txt\", flush=True)\n"
+                + "except OSError as file_error:\n"
+                + "    print(f\"ls: cannot access {file_error.filename!r}: {file_error.strerror}\", file=sys.stderr)\n");
+        check("each cat operand fails on its own",
+                "cat a b\n",
+                "import shutil\n"
+                + "import sys\n"
+                + "sys.stdout.flush()\n"
+                + "try:\n"
+                + "    with open(\"a\", \"rb\") as cat_file: shutil.copyfileobj(cat_file, sys.stdout.buffer)\n"
+                + "except OSError as file_error:\n"
+                + "    print(f\"cat: {file_error.filename}: {file_error.strerror}\", file=sys.stderr)\n"
+                + "try:\n"
+                + "    with open(\"b\", \"rb\") as cat_file: shutil.copyfileobj(cat_file, sys.stdout.buffer)\n"
+                + "except OSError as file_error:\n"
+                + "    print(f\"cat: {file_error.filename}: {file_error.strerror}\", file=sys.stderr)\n");
+        check("mkdir inside an if stays in the block",
+                "if [ -f x ]; then\n    mkdir out\nfi\n",
+                "import os\n"
+                + "import sys\n"
+                + "if os.path.isfile(\"x\"):\n"
+                + "    try:\n"
+                + "        os.mkdir(\"out\")\n"
+                + "    except OSError as file_error:\n"
+                + "        print(f\"mkdir: cannot create directory {file_error.filename!r}: {file_error.strerror}\","
+                + " file=sys.stderr)\n");
+    }
+
+    // Bash's / and % truncate toward zero, Python's // and % round down
+    private static void arithmetic() {
+        check("/ and % on variables truncate toward zero",
+                "echo $((a / b)) $((a % b))\n",
+                "import math\n"
+                + "print(f\"{int(a / b)} {int(math.fmod(a, b))}\")\n");
+        check("int( ) keeps the grouping of / and *",
+                "x=$(( (a + 1) / b * 2 ))\n",
+                "x = int((a + 1) / b) * 2\n");
+        check("a constant that doesn't fit in 64 bits wraps", "x=$((99999999999999999999))\n", "x = 7766279631452241919\n");
+
+        String error = "none";
+        try {
+            new Transpiler().transpile("x=$((08))\n");
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+        }
+        checkEquals("08 is not an octal number", "Syntax Error: 08: value too great for base (error token is \"08\")",
+                error);
+    }
+
+    // Bash sorts a glob's matches and keeps the pattern when nothing matches; find's order is its own
+    private static void globLoops() {
+        check("a glob in a for list iterates sorted matches or the pattern",
+                "for f in *.txt; do echo $f; done\n",
+                "import glob\n"
+                + "for f in sorted(glob.glob(\"*.txt\")) or [\"*.txt\"]:\n"
+                + "    print(f\"{f}\")\n");
+        check("$(find ...) in a for list runs in the shell",
+                "for f in $(find src -name \"*.log\"); do echo $f; done\n",
+                "import subprocess\n"
+                + "for f in subprocess.check_output(\"find src -name \\\"*.log\\\"\", shell=True).decode().rstrip().split():\n"
+                + "    print(f\"{f}\")\n");
+    }
+
+    private static void check(String name, String script, String expected) {
+        String actual;
+        try {
+            actual = new Transpiler().transpile(script);
+        } catch (RuntimeException e) {
+            actual = e.toString();
+        }
+        checkEquals(name, expected, actual);
+    }
+
+    private static void checkEquals(String name, String expected, String actual) {
+        checks++;
+        if (!actual.equals(expected)) {
+            failures++;
+            System.out.println("❌ " + name + "\n--- expected\n" + expected + "--- actual\n" + actual);
+        }
+    }
+}
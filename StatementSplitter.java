@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Finds top-level statement boundaries in a compact token stream without parsing: a newline ends a
+// statement when no if/for/while/case/{ is open and the line doesn't continue (|, &&, || or a function
+// header). Keywords only count in command position, so `echo done` doesn't close a loop. Each range also
+// lists the functions it defines, since calls to them parse differently in later statements.
+public class StatementSplitter {
+    public static class Range {
+        public final int from;   // first token
+        public final int to;     // one past the last token; includes the terminating newline, never EOF
+        public final List<String> functions;
+
+        Range(int from, int to, List<String> functions) {
+            this.from = from;
+            this.to = to;
+            this.functions = functions;
+        }
+    }
+
+    public static List<Range> split(TokenBuffer tokens) {
+        List<Range> ranges = new ArrayList<>();
+        List<String> functions = new ArrayList<>();
+        int depth = 0;
+        int from = -1;
+        boolean commandStart = true;   // the next token is in command position
+        boolean continued = false;     // the line so far can't end a statement
+
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenType type = tokens.type(i);
+            if (type == TokenType.EOF) {
+                break;
+            }
+            if (type == TokenType.NEWLINE) {
+                if (from >= 0 && depth == 0 && !continued) {
+                    ranges.add(new Range(from, i + 1, functions));
+                    functions = new ArrayList<>();
+                    from = -1;
+                }
+                commandStart = true;
+                continue;
+            }
+            if (from < 0) {
+                from = i;
+            }
+            continued = false;
+
+            switch (type) {
+                case KEYWORD:
+                    if (commandStart && (tokens.valueEquals(i, "if") || tokens.valueEquals(i, "for")
+                            || tokens.valueEquals(i, "while") || tokens.valueEquals(i, "case"))) {
+                        depth++;
+                    } else if (commandStart && (tokens.valueEquals(i, "fi") || tokens.valueEquals(i, "done")
+                            || tokens.valueEquals(i, "esac"))) {
+                        depth = Math.max(0, depth - 1);
+                    }
+                    if (tokens.valueEquals(i, "function") && i + 1 < tokens.size() && tokens.type(i + 1) == TokenType.IDENTIFIER) {
+                        functions.add(tokens.value(i + 1));
+                        continued = true;  // the body's brace may be on the next line
+                        i++;
+                        if (i + 2 < tokens.size() && tokens.type(i + 1) == TokenType.LEFT_PAREN
+                                && tokens.type(i + 2) == TokenType.RIGHT_PAREN) {
+                            i += 2;
+                        }
+                        commandStart = true;  // so the { that follows opens the body, with or without ( )
+                        continue;
+                    }
+                    // Conditions and bodies start with a command
+                    commandStart = tokens.valueEquals(i, "if") || tokens.valueEquals(i, "while")
+                            || tokens.valueEquals(i, "then") || tokens.valueEquals(i, "do")
+                            || tokens.valueEquals(i, "else") || tokens.valueEquals(i, "elif");
+                    break;
+                case IDENTIFIER:
+                    // name ( ) { ... }
+                    if (i + 2 < tokens.size() && tokens.type(i + 1) == TokenType.LEFT_PAREN
+                            && tokens.type(i + 2) == TokenType.RIGHT_PAREN) {
+                        functions.add(tokens.value(i));
+                        continued = true;
+                        i += 2;
+                    }
+                    commandStart = false;
+                    break;
+                case CURLY_OPEN:
+                    // A group or function body, not a brace expansion such as {1..5}
+                    if (commandStart || (i > 0 && tokens.type(i - 1) == TokenType.RIGHT_PAREN)) {
+                        depth++;
+                    }
+                    commandStart = true;
+                    break;
+                case CURLY_CLOSE:
+                    if (commandStart) {
+                        depth = Math.max(0, depth - 1);
+                    }
+                    commandStart = false;
+                    break;
+                case OPERATOR:
+                    continued = tokens.valueEquals(i, "|") || tokens.valueEquals(i, "&&") || tokens.valueEquals(i, "||");
+                    commandStart = continued || tokens.valueEquals(i, ";") || tokens.valueEquals(i, "&")
+                            || tokens.valueEquals(i, "!");
+                    break;
+                case SEPARATOR:
+                case LEFT_PAREN:
+                case RIGHT_PAREN:   // also ends a case pattern
+                    commandStart = true;
+                    break;
+                default:
+                    commandStart = false;
+                    break;
+            }
+        }
+
+        if (from >= 0) {
+            int end = tokens.size() > 0 && tokens.type(tokens.size() - 1) == TokenType.EOF ? tokens.size() - 1 : tokens.size();
+            ranges.add(new Range(from, end, functions));
+        }
+        return ranges;
+    }
+}
@@ -1,22 +1,33 @@
 public class Token {
     private TokenType type;
     private String value;
+    private TokenBuffer buffer;  // Set for compact tokens, whose value is read from the buffer on demand
+    private int index;
 
     public Token(TokenType type, String value) {
         this.type = type;
         this.value = value;
     }
 
+    Token(TokenBuffer buffer, int index) {
+        this.type = buffer.type(index);
+        this.buffer = buffer;
+        this.index = index;
+    }
+
     public TokenType getType() {  // ✅ Fix: Add this method
         return type;
     }
 
     public String getValue() {  // ✅ Fix: Add this method
+        if (value == null && buffer != null) {
+            value = buffer.value(index);
+        }
         return value;
     }
 
     @Override
     public String toString() {
-        return "Token(" + type + ", " + value + ")";
+        return "Token(" + type + ", " + getValue() + ")";
     }
 }
@@ -0,0 +1,121 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// Compact token stream: parallel primitive arrays of type ordinals, start offsets and lengths
+// over the source text. Token values are only materialized when asked for.
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 256;
+
+    private CharSequence source;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int base;   // index of the first token still held; earlier ones were discarded by a streaming parser
+    private int size;   // one past the index of the last token, so indices stay stable across discards
+
+    public TokenBuffer(CharSequence source) {
+        this.source = source;
+        this.types = new byte[INITIAL_CAPACITY];
+        this.starts = new int[INITIAL_CAPACITY];
+        this.lengths = new int[INITIAL_CAPACITY];
+    }
+
+    // Empties the buffer for a new source; the arrays keep their grown capacity
+    public TokenBuffer reset(CharSequence source) {
+        this.source = source;
+        this.base = 0;
+        this.size = 0;
+        return this;
+    }
+
+    // Drops the tokens before index and reuses their slots; later tokens keep their indices
+    public void discardBefore(int index) {
+        int drop = index - base;
+        if (drop <= 0) {
+            return;
+        }
+        int keep = size - index;
+        System.arraycopy(types, drop, types, 0, keep);
+        System.arraycopy(starts, drop, starts, 0, keep);
+        System.arraycopy(lengths, drop, lengths, 0, keep);
+        base = index;
+    }
+
+    public void add(TokenType type, int start, int length) {
+        int slot = size - base;
+        if (slot == types.length) {
+            int capacity = slot * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        types[slot] = (byte) type.ordinal();
+        starts[slot] = start;
+        lengths[slot] = length;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index - base]];
+    }
+
+    public int start(int index) {
+        return starts[index - base];
+    }
+
+    public int length(int index) {
+        return lengths[index - base];
+    }
+
+    public String value(int index) {
+        int start = starts[index - base];
+        return source.subSequence(start, start + lengths[index - base]).toString();
+    }
+
+    // Compares a token's text without materializing it
+    public boolean valueEquals(int index, String expected) {
+        int length = lengths[index - base];
+        if (length != expected.length()) {
+            return false;
+        }
+        int start = starts[index - base];
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Token token(int index) {
+        return new Token(this, index);
+    }
+
+    // List view for code that expects List<Token>; each get() creates a lazy Token
+    public List<Token> asList() {
+        return new AbstractList<Token>() {
+            @Override
+            public Token get(int index) {
+                if (index < base || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return token(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -34,7 +34,8 @@ public enum TokenType {
     RIGHT_BRACKET,
     DOLLAR,
     RANGE_OPERATOR,
-    OTHER;       // For any other special characters not explicitly listed
+    OTHER,       // For any other special characters not explicitly listed
+    GLOB;        // An unquoted word with * or ?, e.g. *.txt or logs/*.gz
 
     private TokenType() {
     }
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Content-addressed cache of generated Python, keyed by SHA-256 of the transpiler version and the script.
+// An in-memory LRU tier sits in front of an optional directory of <key>.py files. The memory tier is bounded by
+// the total length of the Python it holds, not by entry count, so a few huge generated scripts can't pin the heap.
+public class TranspileCache {
+    // Bump whenever generated output changes so stale entries (on disk especially) stop matching
+    public static final String TRANSPILER_VERSION = "12";
+    public static final long DEFAULT_MEMORY_LIMIT = 64L << 20;   // characters of cached Python, about 64 MB
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final LinkedHashMap<String, String> memory;   // access order: least recently used first
+    private final long memoryLimit;
+    private long memoryChars;   // guarded by memory
+    private final Path directory;   // null for a memory-only cache
+    private final Diagnostics diagnostics;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TranspileCache(long memoryLimit) {
+        this(memoryLimit, null);
+    }
+
+    // memoryLimit is the most characters of Python the memory tier holds at once
+    public TranspileCache(long memoryLimit, Path directory) {
+        this.directory = directory;
+        this.diagnostics = Diagnostics.getDefault();
+        this.memoryLimit = memoryLimit;
+        this.memory = new LinkedHashMap<>(64, 0.75f, true);
+    }
+
+    // --cache-memory <MB> as a memory limit in characters
+    public static long parseMemoryLimit(String megabytes) {
+        try {
+            long limit = Long.parseLong(megabytes);
+            if (limit >= 1 && limit <= Long.MAX_VALUE >> 20) {
+                return limit << 20;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--cache-memory expects a positive number of megabytes, not '" + megabytes + "'");
+    }
+
+    // Returns the cached Python for script, running transpiler and storing its result on a miss
+    public String get(String script, Function<String, String> transpiler) {
+        String key = key(script);
+
+        String python;
+        synchronized (memory) {
+            python = memory.get(key);
+        }
+        if (python != null) {
+            hits.incrementAndGet();
+            return python;
+        }
+
+        python = readDisk(key);
+        if (python != null) {
+            hits.incrementAndGet();
+            diskHits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            python = transpiler.apply(script);
+            writeDisk(key, python);
+        }
+
+        synchronized (memory) {
+            remember(key, python);
+        }
+        return python;
+    }
+
+    // Adds the entry, then drops least recently used ones until the tier is back under its limit. An entry
+    // larger than the whole limit is not kept in memory at all.
+    private void remember(String key, String python) {
+        if (python.length() > memoryLimit) {
+            return;
+        }
+        String previous = memory.put(key, python);
+        memoryChars += python.length() - (previous == null ? 0 : previous.length());
+        Iterator<Map.Entry<String, String>> eldest = memory.entrySet().iterator();
+        while (memoryChars > memoryLimit) {
+            memoryChars -= eldest.next().getValue().length();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public static String key(String script) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        digest.update(TRANSPILER_VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] hash = digest.digest(script.getBytes(StandardCharsets.UTF_8));
+
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private String readDisk(String key) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            return new String(Files.readAllBytes(directory.resolve(key + ".py")), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            diagnostics.warn("⚠️ Cache read failed for " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Written to a temporary file and moved into place, so concurrent readers never see half an entry
+    private void writeDisk(String key, String python) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, python.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, directory.resolve(key + ".py"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            diagnostics.warn("⚠️ Cache write failed for " + key + ": " + e.getMessage());
+        }
+    }
+
+    public int size() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    // Characters of Python the memory tier holds
+    public long memoryChars() {
+        synchronized (memory) {
+            return memoryChars;
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.get(), diskHits.get(), misses.get(), evictions.get());
+    }
+
+    public static class Stats {
+        public final long hits;
+        public final long diskHits;   // Included in hits
+        public final long misses;
+        public final long evictions;
+
+        Stats(long hits, long diskHits, long misses, long evictions) {
+            this.hits = hits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("📦 Cache: %d hits (%d from disk), %d misses, %d evictions, %.1f%% hit rate",
+                    hits, diskHits, misses, evictions, hitRate() * 100);
+        }
+    }
+}
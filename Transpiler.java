@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// In-memory entry point: Bash source in, Python source out, with no files and no shared mutable state.
+// One instance can be used from any number of threads; Main, CompilerUI, batch mode and the daemon wrap it.
+public class Transpiler {
+    private final Diagnostics diagnostics;
+    // One Lexer/Parser pair per thread, reset for every conversion so their buffers are reused
+    private final ThreadLocal<Workspace> workspaces;
+
+    public Transpiler() {
+        this(Diagnostics.getDefault());
+    }
+
+    public Transpiler(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(diagnostics));
+    }
+
+    // Compact offset/length tokens over the in-memory source keep per-token garbage out of long runs
+    public void transpile(CharSequence source, Appendable out) throws IOException {
+        Workspace workspace = workspaces.get();
+        try {
+            TokenBuffer tokens = workspace.lexer.reset(source).tokenizeCompact();
+            if (diagnostics.isDebugEnabled()) {
+                debugTokens(tokens.asList());
+            }
+            write(workspace.parser.reset(tokens).parseProgram(), out, workspace.statement);
+        } finally {
+            workspace.release();
+        }
+    }
+
+    // Streams the source, so lexing never holds more than the longest token; read errors surface as IOException
+    public void transpile(Reader source, Appendable out) throws IOException {
+        Workspace workspace = workspaces.get();
+        List<Token> tokens = workspace.tokens;
+        try {
+            workspace.lexer.reset(source).tokenize(tokens);
+            debugTokens(tokens);
+            write(workspace.parser.reset(tokens).parseProgram(), out, workspace.statement);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            workspace.release();
+        }
+    }
+
+    // Scripts up to 2 GB are memory-mapped and lexed in place, so tokens start flowing without reading the
+    // file first; anything larger is streamed through a Reader
+    public void transpile(Path script, Appendable out) throws IOException {
+        if (Files.size(script) <= MappedSource.MAX_SIZE) {
+            transpile(MappedSource.open(script), out);
+        } else {
+            try (Reader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+                transpile(reader, out);
+            }
+        }
+    }
+
+    // ✅ Streaming mode: each top-level statement is lexed, parsed and written in turn and then dropped, so
+    // memory stays flat however long the script is. Imports can't all be known up front, so each one is
+    // written just before the first statement that needs it. On a syntax error, out already holds the
+    // statements before it.
+    public void transpileStreaming(CharSequence source, Appendable out) throws IOException {
+        Workspace workspace = workspaces.get();
+        try {
+            // Tokens are scanned as the parser reaches them and dropped once their statement is done
+            Parser parser = workspace.parser.reset(workspace.lexer.reset(source));
+            Set<String> imported = new HashSet<>();
+            Node statement;
+            while ((statement = parser.parseNextStatement()) != null) {
+                Set<String> modules = CodeGenerator.imports(statement);
+                modules.removeAll(imported);
+                if (!modules.isEmpty()) {
+                    out.append(CodeGenerator.generateImports(modules)).append('\n');
+                    imported.addAll(modules);
+                }
+
+                workspace.statement.setLength(0);
+                Metrics.Span span = Metrics.start();
+                CodeGenerator.generate(statement, 0, workspace.statement);
+                Metrics.stop(span, Metrics.GENERATE);
+
+                span = Metrics.start();
+                out.append(workspace.statement).append('\n');
+                Metrics.stop(span, Metrics.WRITE);
+            }
+        } finally {
+            workspace.release();
+        }
+    }
+
+    public void transpileStreaming(Path script, Appendable out) throws IOException {
+        if (Files.size(script) > MappedSource.MAX_SIZE) {
+            throw new IOException(script + " is too large to map; streaming mode needs a mappable script");
+        }
+        transpileStreaming(MappedSource.open(script), out);
+    }
+
+    // ✅ Parallel mode: top-level statements are grouped into chunks that are parsed and generated on a
+    // fork-join pool, then written in order. Every chunk parser reads the same token buffer. If a chunk
+    // fails to parse (the splitter only approximates the grammar), the script is redone sequentially,
+    // so output and errors always match transpile().
+    public void transpileParallel(CharSequence source, Appendable out, ForkJoinPool pool) throws IOException {
+        Workspace workspace = workspaces.get();
+        try {
+            TokenBuffer tokens = workspace.lexer.reset(source).tokenizeCompact();
+            List<StatementSplitter.Range> ranges = StatementSplitter.split(tokens);
+
+            // Fewer, larger chunks than statements, so task overhead stays small next to parsing
+            int chunkTokens = Math.max(MIN_CHUNK_TOKENS, tokens.size() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+            List<ForkJoinTask<Chunk>> chunks = new ArrayList<>();
+            Set<String> functions = new HashSet<>();
+            int first = 0;
+            for (int i = 0; i < ranges.size(); i++) {
+                StatementSplitter.Range last = ranges.get(i);
+                if (last.to - ranges.get(first).from < chunkTokens && i + 1 < ranges.size()) {
+                    continue;
+                }
+                int from = ranges.get(first).from;
+                Set<String> known = new HashSet<>(functions);  // functions defined before this chunk
+                chunks.add(pool.submit(() -> Chunk.convert(tokens, from, last.to, known, diagnostics)));
+                for (int j = first; j <= i; j++) {
+                    functions.addAll(ranges.get(j).functions);
+                }
+                first = i + 1;
+            }
+
+            Set<String> imports = new TreeSet<>();
+            List<Chunk> results = new ArrayList<>(chunks.size());
+            for (ForkJoinTask<Chunk> chunk : chunks) {
+                Chunk result = chunk.join();
+                if (result == null) {
+                    // Let running chunks finish before the retry reuses their token buffer
+                    for (ForkJoinTask<Chunk> other : chunks) {
+                        other.cancel(false);
+                        other.quietlyJoin();
+                    }
+                    transpile(source, out);
+                    return;
+                }
+                imports.addAll(result.imports);
+                results.add(result);
+            }
+
+            if (!imports.isEmpty()) {
+                out.append(CodeGenerator.generateImports(imports)).append('\n');
+            }
+            for (Chunk result : results) {
+                out.append(result.python);
+            }
+        } finally {
+            workspace.release();
+        }
+    }
+
+    public void transpileParallel(CharSequence source, Appendable out) throws IOException {
+        transpileParallel(source, out, ForkJoinPool.commonPool());
+    }
+
+    // The syntax tree alone, e.g. to save with BinaryFormat and generate from later without lexing again
+    public Node parse(CharSequence source) {
+        Workspace workspace = workspaces.get();
+        try {
+            return workspace.parser.reset(workspace.lexer.reset(source).tokenizeCompact()).parseProgram();
+        } finally {
+            workspace.release();
+        }
+    }
+
+    public void generate(Node program, Appendable out) throws IOException {
+        write(program, out, new StringBuilder());
+    }
+
+    public String transpile(CharSequence source) {
+        StringBuilder python = new StringBuilder(source.length() * 2);
+        try {
+            transpile(source, python);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        return python.toString();
+    }
+
+    // ✅ Print tokens for debugging (-Dtranspiler.log=DEBUG)
+    private void debugTokens(List<Token> tokens) {
+        if (diagnostics.isDebugEnabled()) {
+            diagnostics.debug("\n🔹 **TOKENS FOUND:**");
+            for (Token token : tokens) {
+                diagnostics.debug(token.toString());
+            }
+        }
+    }
+
+    // The generated file's contents: the imports, then one line per top-level statement, each newline-terminated
+    private static void write(Node program, Appendable out, StringBuilder statement) throws IOException {
+        String imports = CodeGenerator.generateImports(program);
+        if (!imports.isEmpty()) {
+            out.append(imports).append('\n');
+        }
+
+        for (Node child : program.children) {
+            statement.setLength(0);
+            Metrics.Span span = Metrics.start();
+            CodeGenerator.generate(child, 0, statement);
+            Metrics.stop(span, Metrics.GENERATE);
+
+            span = Metrics.start();
+            out.append(statement).append('\n');
+            Metrics.stop(span, Metrics.WRITE);
+        }
+    }
+
+    private static final int MIN_CHUNK_TOKENS = 2048;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // Python for a run of top-level statements, and the modules it imports
+    private static class Chunk {
+        final StringBuilder python = new StringBuilder();
+        final Set<String> imports = new TreeSet<>();
+
+        // Null when the chunk doesn't parse on its own
+        static Chunk convert(TokenBuffer tokens, int from, int to, Set<String> functions, Diagnostics diagnostics) {
+            Parser parser = new Parser(diagnostics).reset(tokens, from, to);
+            parser.declareFunctions(functions);
+            Chunk chunk = new Chunk();
+            try {
+                Node statement;
+                while ((statement = parser.parseNextStatement()) != null) {
+                    chunk.imports.addAll(CodeGenerator.imports(statement));
+                    Metrics.Span span = Metrics.start();
+                    CodeGenerator.generate(statement, 0, chunk.python);
+                    Metrics.stop(span, Metrics.GENERATE);
+                    chunk.python.append('\n');
+                }
+            } catch (RuntimeException | StackOverflowError e) {
+                return null;
+            }
+            return chunk;
+        }
+    }
+
+    private static class Workspace {
+        final Lexer lexer;
+        final Parser parser;
+        final List<Token> tokens = new ArrayList<>();
+        final StringBuilder statement = new StringBuilder();
+
+        Workspace(Diagnostics diagnostics) {
+            this.lexer = new Lexer(diagnostics);
+            this.parser = new Parser(diagnostics);
+        }
+
+        // Keeps the buffers but not the last script, so an idle thread doesn't pin its source or tokens
+        void release() {
+            lexer.reset("");
+            tokens.clear();
+            parser.reset(tokens);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Resident transpiler: keeps a warmed-up JVM and serves conversions over a local socket.
+//
+// Protocol, per request on a connection (a connection may carry any number of requests):
+//   request:  int length, then length bytes of UTF-8 Bash source
+//   response: byte status (0 = ok, 1 = error), int length, then length bytes of UTF-8
+//             Python source or error message
+// Integers are big-endian, as written by DataOutputStream. A connection that waits more than IDLE_TIMEOUT_MILLIS
+// for a request, or for the rest of one, is closed so idle clients can't hold every worker.
+public class TranspilerServer implements Closeable {
+    public static final int DEFAULT_PORT = 7878;
+    static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    private static final long WARMUP_MILLIS = 1000;
+    static final long IDLE_TIMEOUT_MILLIS = 30_000;
+
+    private final SocketAddress address;
+    private final int parallelism;
+    private final TranspileCache cache;
+    private ServerSocketChannel server;
+    private volatile boolean bound;  // once bound, the socket file is ours to remove on close
+    private ExecutorService workers;
+    private ScheduledExecutorService reaper;
+    private final Map<SocketChannel, Long> waiting = new ConcurrentHashMap<>();  // connection -> nanoTime it started waiting
+
+    public TranspilerServer(SocketAddress address, int parallelism) {
+        this(address, parallelism, new TranspileCache(TranspileCache.DEFAULT_MEMORY_LIMIT));
+    }
+
+    public TranspilerServer(SocketAddress address, int parallelism, TranspileCache cache) {
+        this.address = address;
+        this.parallelism = Math.max(1, parallelism);
+        this.cache = cache;
+    }
+
+    // Usage: java Main --serve [--port <port> | --socket <path>] [-j <threads>] [--cache <dir>] [--cache-memory <MB>]
+    //        [--metrics]
+    public static void main(String[] args) {
+        String threads = null;
+        Path cacheDirectory = null;
+        String cacheMemory = null;
+        List<String> addressArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-j") && i + 1 < args.length) {
+                threads = args[++i];
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                cacheDirectory = Paths.get(args[++i]);
+            } else if (args[i].equals("--cache-memory") && i + 1 < args.length) {
+                cacheMemory = args[++i];
+            } else if (args[i].equals("--metrics")) {
+                Metrics.setEnabled(true);    // read through JMX as transpiler:type=Metrics
+                Metrics.registerMBean();
+            } else {
+                addressArgs.add(args[i]);
+            }
+        }
+
+        try {
+            int parallelism = threads == null
+                    ? Runtime.getRuntime().availableProcessors() : BatchTranspiler.parseThreads(threads);
+            long memoryLimit = cacheMemory == null
+                    ? TranspileCache.DEFAULT_MEMORY_LIMIT : TranspileCache.parseMemoryLimit(cacheMemory);
+            TranspileCache cache = new TranspileCache(memoryLimit, cacheDirectory);
+            TranspilerServer server = new TranspilerServer(parseAddress(addressArgs), parallelism, cache);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            server.start();
+            server.serve();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("❌ Transpiler daemon failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // --port <port> binds the loopback interface; --socket <path> uses a Unix-domain socket
+    static SocketAddress parseAddress(List<String> args) {
+        if (args.isEmpty()) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+        }
+        if (args.size() == 2 && args.get(0).equals("--port")) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args.get(1)));
+        }
+        if (args.size() == 2 && args.get(0).equals("--socket")) {
+            return UnixDomainSocketAddress.of(args.get(1));
+        }
+        throw new IllegalArgumentException("Expected --port <port> or --socket <path> but found " + args);
+    }
+
+    // Binds first so clients that connect during warm-up wait in the accept backlog instead of being refused
+    public void start() throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            removeStaleSocket((UnixDomainSocketAddress) address);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        bound = true;
+        workers = Executors.newFixedThreadPool(parallelism);
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transpiler-idle-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleWithFixedDelay(this::closeIdleConnections, 1, 1, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        int rounds = warmUp();
+        Metrics.reset();   // warm-up conversions aren't traffic
+        System.out.printf("🔥 Warmed up with %d rounds in %.0f ms%n", rounds, (System.nanoTime() - start) / 1e6);
+        System.out.println("🚀 Transpiler daemon listening on " + server.getLocalAddress() + " (" + parallelism + " threads)");
+    }
+
+    // A socket file left by a daemon that didn't shut down cleanly is replaced. Anything else at the path, or a
+    // socket another daemon is still listening on, is left alone.
+    private static void removeStaleSocket(UnixDomainSocketAddress address) throws IOException {
+        Path path = address.getPath();
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (!Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther()) {
+            throw new IOException(path + " exists and is not a socket");
+        }
+        boolean listening;
+        try (SocketChannel probe = SocketChannel.open(address)) {
+            listening = probe.isConnected();
+        } catch (IOException e) {
+            listening = false;  // refused: nothing owns the socket any more
+        }
+        if (listening) {
+            throw new IOException("Another daemon is listening on " + path);
+        }
+        Files.delete(path);
+    }
+
+    // Closing the channel wakes the worker blocked reading from it, which then drops the connection
+    private void closeIdleConnections() {
+        long now = System.nanoTime();
+        waiting.forEach((channel, since) -> {
+            if (now - since > IDLE_TIMEOUT_MILLIS * 1_000_000 && waiting.remove(channel, since)) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("⚠️ Error closing idle client connection: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Accepts connections until the server is closed; each connection is served on a worker thread
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            try {
+                workers.execute(() -> handle(client));
+            } catch (RejectedExecutionException e) {
+                client.close();
+                return;
+            }
+        }
+    }
+
+    public SocketAddress getLocalAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (server != null) {
+                server.close();
+            }
+            if (bound && address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Error closing transpiler daemon: " + e.getMessage());
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        if (cache != null) {
+            System.out.println(cache.stats());
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            while (true) {
+                waiting.put(channel, System.nanoTime());
+                byte[] request = readFrame(in);
+                waiting.remove(channel);
+                if (request == null) {
+                    break;
+                }
+                String script = new String(request, StandardCharsets.UTF_8);
+                try {
+                    // Unchanged scripts are answered from the cache without lexing or parsing
+                    Metrics.Span span = Metrics.start();
+                    String python = cache != null ? cache.get(script, TranspilerServer::convert) : convert(script);
+                    Metrics.stop(span, Metrics.CONVERT);
+                    writeResponse(out, STATUS_OK, python);
+                } catch (Exception | StackOverflowError e) {
+                    // A bad script fails its own request; the connection and the daemon stay up
+                    String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                    writeResponse(out, STATUS_ERROR, message);
+                }
+                out.flush();
+            }
+        } catch (AsynchronousCloseException e) {
+            System.err.println("⚠️ Closed client connection idle for over " + IDLE_TIMEOUT_MILLIS / 1000 + " s");
+        } catch (IOException e) {
+            System.err.println("⚠️ Dropped client connection: " + e.getMessage());
+        } finally {
+            waiting.remove(client);
+        }
+    }
+
+    // Transpiler holds no per-conversion state, so all workers share one
+    private static final Transpiler TRANSPILER = new Transpiler();
+
+    static String convert(String script) {
+        return TRANSPILER.transpile(script);
+    }
+
+    // One of each construct the pipeline handles, so warm-up compiles every stage's hot paths
+    private static final String WARMUP_SCRIPT = String.join("\n",
+            "name=\"world\"",
+            "count=0",
+            "echo \"Hello, $name\"",
+            "if [ -f config.txt ]; then",
+            "    cat config.txt | grep -v \"#\" | sort | head -n 5",
+            "elif [ -d conf ]; then",
+            "    ls conf",
+            "else",
+            "    mkdir -p conf && touch conf.default",
+            "fi",
+            "for i in $(seq 1 10); do",
+            "    count=$((count + i * 2))",
+            "done",
+            "for f in *.log; do",
+            "    echo \"$f\"",
+            "done",
+            "while [ $count -gt 0 ]; do",
+            "    count=$((count - 5))",
+            "done",
+            "case \"$name\" in",
+            "    world) echo \"default\" ;;",
+            "    *.txt) echo \"file\" ;;",
+            "    *) echo \"other\" ;;",
+            "esac",
+            "greet() {",
+            "    echo \"hi\"",
+            "}",
+            "greet",
+            "[ -z \"$name\" ] && echo \"empty\" || echo \"set\"",
+            "rm -f old.log",
+            "echo \"finished\" > status.txt",
+            "");
+
+    // Runs WARMUP_SCRIPT through the pipeline so the first real request hits compiled code. A quiet Transpiler
+    // of its own keeps the caller's diagnostics setting untouched.
+    static int warmUp() {
+        Transpiler quiet = new Transpiler(Diagnostics.OFF);
+        long deadline = System.nanoTime() + WARMUP_MILLIS * 1_000_000;
+        int rounds = 0;
+        do {
+            quiet.transpile(WARMUP_SCRIPT);
+            rounds++;
+        } while (System.nanoTime() < deadline);
+        return rounds;
+    }
+
+    // Returns null when the peer closed the connection between frames
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Frame length " + length + " exceeds the " + MAX_FRAME_BYTES + " byte limit");
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    static void writeResponse(DataOutputStream out, byte status, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(status);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Blocking client for the daemon; one instance reuses a single connection for many requests
+    public static class Client implements Closeable {
+        private final SocketChannel channel;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        public Client(SocketAddress address) throws IOException {
+            this.channel = SocketChannel.open(address);
+            this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        }
+
+        // Usage: java Main --client [--port <port> | --socket <path>] <file.sh>...
+        public static void main(String[] args) {
+            List<String> addressArgs = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            for (int i = 0; i < args.length; i++) {
+                if ((args[i].equals("--port") || args[i].equals("--socket")) && i + 1 < args.length) {
+                    addressArgs.add(args[i]);
+                    addressArgs.add(args[++i]);
+                } else {
+                    files.add(Paths.get(args[i]));
+                }
+            }
+
+            boolean failed = false;
+            try (Client client = new Client(parseAddress(addressArgs))) {
+                for (Path file : files) {
+                    try {
+                        System.out.print(client.transpile(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+                    } catch (TranspileException e) {
+                        System.err.println("❌ " + file + ": " + e.getMessage());
+                        failed = true;
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("❌ Transpiler daemon unavailable: " + e.getMessage());
+                failed = true;
+            }
+            if (failed) {
+                System.exit(1);
+            }
+        }
+
+        public String transpile(String script) throws IOException {
+            byte[] request = script.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(request.length);
+            out.write(request);
+            out.flush();
+
+            byte status = in.readByte();
+            int length = in.readInt();
+            if (length < 0 || length > MAX_FRAME_BYTES) {
+                throw new IOException("Frame length " + length + " exceeds the " + MAX_FRAME_BYTES + " byte limit");
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            String text = new String(payload, StandardCharsets.UTF_8);
+            if (status != STATUS_OK) {
+                throw new TranspileException(text);
+            }
+            return text;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // The daemon answered, but the script itself could not be converted
+    public static class TranspileException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public TranspileException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import benchmarks.Workloads;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// The operations measured by benchmarks.TranspilerBenchmark, the same ones the quick Benchmark runner uses
+public class CorpusWorkloads implements Workloads {
+    public CorpusWorkloads() {
+        Diagnostics.setDefault(Diagnostics.OFF);
+    }
+
+    @Override
+    public String script(String name) {
+        String script = BenchmarkCorpus.scripts().get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("No corpus script named " + name);
+        }
+        return script;
+    }
+
+    @Override
+    public Object lex(String script) {
+        return new Lexer(script).tokenize();
+    }
+
+    @Override
+    public Object lexCompact(String script) {
+        return new Lexer(script).tokenizeCompact();
+    }
+
+    @Override
+    public Object tokens(String script) {
+        return new Lexer(script).tokenize();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object parse(Object tokens) {
+        return new Parser((List<Token>) tokens).parse();
+    }
+
+    @Override
+    public Object program(String script) {
+        return new Parser(new Lexer(script).tokenizeCompact()).parseProgram();
+    }
+
+    @Override
+    public Object generate(Object program, StringBuilder out) {
+        out.setLength(0);
+        CodeGenerator.generate((Node) program, 0, out);
+        return out;
+    }
+
+    @Override
+    public Object transpiler() {
+        return new Transpiler();
+    }
+
+    @Override
+    public Object pipeline(String script) {
+        return String.join("\n", new Parser(new Lexer(script).tokenize()).parse());
+    }
+
+    @Override
+    public Object pipelineCompact(String script) {
+        return String.join("\n", new Parser(new Lexer(script).tokenizeCompact()).parse());
+    }
+
+    @Override
+    public Object pipelineReused(Object transpiler, String script) {
+        return ((Transpiler) transpiler).transpile(script);
+    }
+
+    @Override
+    public Object pipelineParallel(Object transpiler, String script) {
+        StringBuilder python = new StringBuilder();
+        try {
+            ((Transpiler) transpiler).transpileParallel(script, python);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return python;
+    }
+}
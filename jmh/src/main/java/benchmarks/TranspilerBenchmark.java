@@ -0,0 +1,85 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Lexer, parser, generator and whole-pipeline throughput over BenchmarkCorpus. Results are returned so JMH
+// consumes them; add -prof gc for bytes allocated per op:
+//   java -jar jmh/target/benchmarks.jar -prof gc 'TranspilerBenchmark.parse'
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TranspilerBenchmark {
+    @Param({"small", "nested", "deep", "flat", "loops", "case", "while"})
+    public String corpus;
+
+    private Workloads workloads;
+    private String script;
+    private Object tokens;
+    private Object program;
+    private Object transpiler;
+    private final StringBuilder python = new StringBuilder();
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        workloads = (Workloads) Class.forName("CorpusWorkloads").getDeclaredConstructor().newInstance();
+        script = workloads.script(corpus);
+        tokens = workloads.tokens(script);
+        program = workloads.program(script);
+        transpiler = workloads.transpiler();
+    }
+
+    @Benchmark
+    public Object lex() {
+        return workloads.lex(script);
+    }
+
+    @Benchmark
+    public Object lexCompact() {
+        return workloads.lexCompact(script);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return workloads.parse(tokens);
+    }
+
+    @Benchmark
+    public Object generate() {
+        return workloads.generate(program, python);
+    }
+
+    @Benchmark
+    public Object pipeline() {
+        return workloads.pipeline(script);
+    }
+
+    @Benchmark
+    public Object pipelineCompact() {
+        return workloads.pipelineCompact(script);
+    }
+
+    @Benchmark
+    public Object pipelineReused() {
+        return workloads.pipelineReused(transpiler, script);
+    }
+
+    @Benchmark
+    public Object pipelineParallel() {
+        return workloads.pipelineParallel(transpiler, script);
+    }
+}
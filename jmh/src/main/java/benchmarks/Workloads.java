@@ -0,0 +1,29 @@
+package benchmarks;
+
+// The transpiler lives in the default package, which JMH benchmarks (and any other named package) can't
+// reference. CorpusWorkloads implements this from the default package; the benchmarks only see Objects.
+public interface Workloads {
+    String script(String name);
+
+    Object lex(String script);
+
+    Object lexCompact(String script);
+
+    Object tokens(String script);
+
+    Object parse(Object tokens);
+
+    Object program(String script);
+
+    Object generate(Object program, StringBuilder out);
+
+    Object transpiler();
+
+    Object pipeline(String script);
+
+    Object pipelineCompact(String script);
+
+    Object pipelineReused(Object transpiler, String script);
+
+    Object pipelineParallel(Object transpiler, String script);
+}